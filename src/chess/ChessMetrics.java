@@ -0,0 +1,268 @@
+package chess;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Always-on instrumentation for the rules engine: latency histograms per phase,
+ * counters for illegal-move reasons and game outcomes, and counts of the objects
+ * the engine hands out. Everything is LongAdder- or atomic-array-based so recording
+ * from several threads takes no lock. Read it through snapshot-style getters or report().
+ */
+class ChessMetrics {
+
+    /** Timed phases of the rules engine. */
+    enum Phase { PLAY, SIMULATE_AND_CHECK, IS_CHECKMATE, CONVERT_BOARD }
+
+    /** Why Chess.play rejected a move. */
+    enum IllegalReason {
+        MALFORMED,          // could not parse the move string
+        OUT_OF_BOUNDS,      // a square outside the board
+        NO_PIECE,           // nothing on the source square
+        WRONG_COLOR,        // the piece belongs to the other player
+        INVALID_PIECE_MOVE, // the piece cannot move that way
+        LEAVES_KING_IN_CHECK,
+        CASTLE_THROUGH_CHECK
+    }
+
+    /** Outcomes of accepted plays. */
+    enum Outcome { MOVE, CHECK, CHECKMATE, DRAW, RESIGN }
+
+    /** Objects created for callers. */
+    enum Allocation { RETURN_PLAY, RETURN_PIECE }
+
+    /**
+     * Latency histogram in the style of HdrHistogram: samples below 32 ns get a bucket
+     * each, and above that every power of two [2^e, 2^(e+1)) is split into 32 linear
+     * sub-buckets of width 2^(e-5). A percentile is reported as its bucket's upper bound,
+     * capped at the largest sample, so it is within about 3% of the true value at any
+     * magnitude. Buckets are AtomicLongArrays rather than one LongAdder each, which keeps
+     * a histogram to a few small allocations. There is one bucket array per stripe,
+     * chosen by thread id and created on first use, so threads recording at once do not
+     * contend on the same counters; readers sum the stripes.
+     */
+    static final class Histogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        // Samples of 2^MAX_EXPONENT ns (about 18 minutes) or more share the last bucket.
+        private static final int MAX_EXPONENT = 40;
+        private static final int BUCKET_COUNT = SUB_COUNT + (MAX_EXPONENT - SUB_BITS) * SUB_COUNT;
+
+        // A power of two, at least the processor count, capped so a histogram stays small.
+        private static final int STRIPES =
+                Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+        private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        // A named operator rather than Math::max: a method reference spins a class
+        // through LambdaMetafactory on first use, which is most of the cost of the
+        // first play() in a fresh JVM.
+        private final LongAccumulator maxNanos = new LongAccumulator(new Max(), 0);
+
+        void record(long nanos) {
+            if (nanos < 1) nanos = 1;
+            stripe().incrementAndGet(bucketOf(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        /** The calling thread's bucket array, created if this is its stripe's first sample. */
+        private AtomicLongArray stripe() {
+            int index = (int) Thread.currentThread().getId() & (STRIPES - 1);
+            AtomicLongArray buckets = stripes.get(index);
+            if (buckets == null) {
+                stripes.compareAndSet(index, null, new AtomicLongArray(BUCKET_COUNT));
+                buckets = stripes.get(index);
+            }
+            return buckets;
+        }
+
+        static int bucketOf(long nanos) {
+            if (nanos < SUB_COUNT) return (int) nanos;
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            if (exponent >= MAX_EXPONENT) return BUCKET_COUNT - 1;
+            int shift = exponent - SUB_BITS;
+            return (shift + 1) * SUB_COUNT + (int) (nanos >>> shift) - SUB_COUNT;
+        }
+
+        /** The largest value that falls into a bucket. */
+        static long bucketUpperBound(int bucket) {
+            if (bucket < SUB_COUNT) return bucket;
+            int shift = bucket / SUB_COUNT - 1;
+            long sub = bucket % SUB_COUNT + SUB_COUNT;
+            return ((sub + 1) << shift) - 1;
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        long getMeanNanos() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / n;
+        }
+
+        long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * Returns an upper bound on the given percentile.
+         * @param percentile Between 0 and 100.
+         * @return Nanoseconds, or 0 if nothing was recorded.
+         */
+        long getPercentileNanos(double percentile) {
+            long[] counts = new long[BUCKET_COUNT];
+            long total = 0;
+            for (int s = 0; s < STRIPES; s++) {
+                AtomicLongArray buckets = stripes.get(s);
+                if (buckets == null) continue;
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    long n = buckets.get(i);
+                    counts[i] += n;
+                    total += n;
+                }
+            }
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), getMaxNanos());
+                }
+            }
+            return getMaxNanos();
+        }
+
+        void reset() {
+            for (int s = 0; s < STRIPES; s++) {
+                AtomicLongArray buckets = stripes.get(s);
+                if (buckets == null) continue;
+                for (int i = 0; i < BUCKET_COUNT; i++) buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+        }
+
+        private static final class Max implements LongBinaryOperator {
+            public long applyAsLong(long left, long right) {
+                return Math.max(left, right);
+            }
+        }
+    }
+
+    static volatile boolean enabled = true;
+
+    private static final Histogram[] latency = new Histogram[Phase.values().length];
+    private static final LongAdder[] illegal = newAdders(IllegalReason.values().length);
+    private static final LongAdder[] outcomes = newAdders(Outcome.values().length);
+    private static final LongAdder[] allocations = newAdders(Allocation.values().length);
+
+    static {
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new Histogram();
+        }
+    }
+
+    private static LongAdder[] newAdders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Starts timing a phase.
+     * @return A start timestamp to pass to stop, or 0 when metrics are disabled.
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the time since a start timestamp against a phase.
+     * @param phase     The phase.
+     * @param startTime The value returned by start().
+     */
+    static void stop(Phase phase, long startTime) {
+        if (startTime != 0L) {
+            latency[phase.ordinal()].record(System.nanoTime() - startTime);
+        }
+    }
+
+    static void illegal(IllegalReason reason) {
+        if (enabled) illegal[reason.ordinal()].increment();
+    }
+
+    static void outcome(Outcome outcome) {
+        if (enabled) outcomes[outcome.ordinal()].increment();
+    }
+
+    static void allocated(Allocation kind, int count) {
+        if (enabled) allocations[kind.ordinal()].add(count);
+    }
+
+    static Histogram latency(Phase phase) {
+        return latency[phase.ordinal()];
+    }
+
+    static long illegalCount(IllegalReason reason) {
+        return illegal[reason.ordinal()].sum();
+    }
+
+    static long outcomeCount(Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+
+    static long allocationCount(Allocation kind) {
+        return allocations[kind.ordinal()].sum();
+    }
+
+    static void reset() {
+        for (Histogram h : latency) h.reset();
+        for (LongAdder a : illegal) a.reset();
+        for (LongAdder a : outcomes) a.reset();
+        for (LongAdder a : allocations) a.reset();
+    }
+
+    /**
+     * Formats every metric as one line per entry, for logs or a pull endpoint.
+     * @return The report.
+     */
+    static String report() {
+        StringBuilder sb = new StringBuilder(1024);
+        for (Phase phase : Phase.values()) {
+            Histogram h = latency(phase);
+            sb.append("latency.").append(phase.name().toLowerCase())
+                    .append(" count=").append(h.getCount())
+                    .append(" meanNs=").append(h.getMeanNanos())
+                    .append(" p50Ns=").append(h.getPercentileNanos(50))
+                    .append(" p99Ns=").append(h.getPercentileNanos(99))
+                    .append(" maxNs=").append(h.getMaxNanos()).append('\n');
+        }
+        for (IllegalReason reason : IllegalReason.values()) {
+            sb.append("illegal.").append(reason.name().toLowerCase())
+                    .append(' ').append(illegalCount(reason)).append('\n');
+        }
+        for (Outcome outcome : Outcome.values()) {
+            sb.append("outcome.").append(outcome.name().toLowerCase())
+                    .append(' ').append(outcomeCount(outcome)).append('\n');
+        }
+        for (Allocation kind : Allocation.values()) {
+            sb.append("allocated.").append(kind.name().toLowerCase())
+                    .append(' ').append(allocationCount(kind)).append('\n');
+        }
+        LegalMoveCache cache = Chess.legalMoveCache();
+        sb.append("legalMoveCache.hits ").append(cache.getHits()).append('\n');
+        sb.append("legalMoveCache.misses ").append(cache.getMisses()).append('\n');
+        return sb.toString();
+    }
+}
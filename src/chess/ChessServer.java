@@ -0,0 +1,279 @@
+package chess;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Serves many games from one process over plain TCP. Every connection gets its own
+ * game. The client sends one move per line in the notation Chess.play accepts (or
+ * "reset"), and the server answers each line with one frame:
+ * <pre>
+ *   &lt;MESSAGE&gt; &lt;64 board characters, a8..h8 down to a1..h1&gt;\n
+ * </pre>
+ * MESSAGE is a ReturnPlay.Message name or OK. Board characters are FEN letters
+ * (PNBRQK white, pnbrqk black) with '.' for an empty square.
+ *
+ * After "delta" a connection gets delta frames instead, listing only the squares the
+ * move changed, each followed by its new board character, and the move's sequence
+ * number (moves played so far):
+ * <pre>
+ *   &lt;MESSAGE&gt; &lt;sequence&gt; [&lt;square&gt;&lt;character&gt; ...]\n      e.g. "OK 1 e2. e4P"
+ *   SYNC &lt;sequence&gt; &lt;64 board characters&gt;\n
+ * </pre>
+ * A SYNC frame answers "delta", "sync" and "reset" in delta mode; "full" switches back.
+ *
+ * "metrics" answers with the engine's play latency so far (see ChessMetrics):
+ * <pre>
+ *   METRICS &lt;plays&gt; &lt;p50 ns&gt; &lt;p99 ns&gt; &lt;p99.9 ns&gt; &lt;max ns&gt;\n
+ * </pre>
+ *
+ * While a connection has output the client has not yet taken, the server stops reading
+ * from it, so a client that never reads cannot make the server buffer without bound.
+ *
+ * A single selector thread does all I/O and all engine calls. Each session plays on
+ * its own Game, so one session's moves and snapshots never touch another's.
+ */
+public class ChessServer {
+
+    static final int DEFAULT_PORT = 8765;
+    private static final int MAX_LINE = 64;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private volatile boolean running = true;
+
+    /** Per-connection game and buffers. */
+    private static final class Session {
+        final Game game = new Game();
+        boolean delta;
+        final ByteBuffer readBuffer = ByteBuffer.allocate(256);
+        final StringBuilder line = new StringBuilder(MAX_LINE);
+        ByteBuffer pending;
+    }
+
+    /**
+     * Opens a server bound to the given address.
+     * @param address Address to bind; use port 0 for an ephemeral port.
+     * @throws IOException If the socket cannot be opened.
+     */
+    ChessServer(InetSocketAddress address) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        ChessServer server = new ChessServer(new InetSocketAddress("127.0.0.1", port));
+        System.out.println("Listening on " + server.getPort());
+        server.run();
+    }
+
+    int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Asks the event loop to exit and close all connections.
+     */
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Runs the event loop on the calling thread until shutdown is called.
+     * @throws IOException If the selector fails.
+     */
+    void run() throws IOException {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        else {
+                            if (key.isReadable()) read(key);
+                            if (key.isValid() && key.isWritable()) write(key);
+                        }
+                    } catch (IOException e) {
+                        close(key);
+                    }
+                }
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Session session = new Session();
+            channel.register(selector, SelectionKey.OP_READ, session);
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Session session = (Session) key.attachment();
+        int n = channel.read(session.readBuffer);
+        if (n < 0) {
+            close(key);
+            return;
+        }
+        session.readBuffer.flip();
+        StringBuilder replies = null;
+        while (session.readBuffer.hasRemaining()) {
+            char ch = (char) (session.readBuffer.get() & 0xFF);
+            if (ch == '\n') {
+                if (replies == null) replies = new StringBuilder(80);
+                handleLine(session, session.line.toString().trim(), replies);
+                session.line.setLength(0);
+            } else if (ch != '\r' && session.line.length() < MAX_LINE) {
+                session.line.append(ch);
+            }
+        }
+        session.readBuffer.clear();
+        if (replies != null) {
+            queue(key, session, replies);
+        }
+    }
+
+    private void handleLine(Session session, String line, StringBuilder replies) {
+        if (line.isEmpty()) return;
+        ReturnPlay res;
+        switch (line) {
+            case "delta":
+                session.delta = true;
+                appendSync(session.game.snapshot(), replies);
+                return;
+            case "full":
+                session.delta = false;
+                appendFrame(null, session.game.snapshot(), replies);
+                return;
+            case "sync":
+                if (session.delta) appendSync(session.game.snapshot(), replies);
+                else appendFrame(null, session.game.snapshot(), replies);
+                return;
+            case "metrics":
+                ChessMetrics.Histogram play = ChessMetrics.latency(ChessMetrics.Phase.PLAY);
+                replies.append("METRICS ").append(play.getCount())
+                        .append(' ').append(play.getPercentileNanos(50))
+                        .append(' ').append(play.getPercentileNanos(99))
+                        .append(' ').append(play.getPercentileNanos(99.9))
+                        .append(' ').append(play.getMaxNanos()).append('\n');
+                return;
+            case "reset":
+                session.game.start();
+                res = null;
+                break;
+            default:
+                // Full frames are drawn from the position snapshot, so the result never
+                // needs to list the whole board.
+                res = session.game.playDelta(line);
+        }
+        if (!session.delta) {
+            appendFrame(res, session.game.snapshot(), replies);
+        } else if (res == null) {
+            appendSync(session.game.snapshot(), replies);
+        } else {
+            appendDelta(res, replies);
+        }
+    }
+
+    /**
+     * Appends one response frame for a play result (null for a fresh board).
+     */
+    static void appendFrame(ReturnPlay res, Position position, StringBuilder sb) {
+        sb.append(res == null || res.message == null ? "OK" : res.message.name()).append(' ');
+        position.appendBoard(sb);
+        sb.append('\n');
+    }
+
+    /**
+     * Appends a delta frame: the message, the sequence number and each changed square.
+     */
+    static void appendDelta(ReturnPlay res, StringBuilder sb) {
+        sb.append(res.message == null ? "OK" : res.message.name()).append(' ').append(res.sequence);
+        for (ReturnPiece rp : res.changedSquares) {
+            sb.append(' ').append(rp.pieceFile.name()).append(rp.pieceRank);
+            if (rp.pieceType == null) {
+                sb.append('.');
+            } else {
+                char letter = rp.pieceType.name().charAt(1);
+                sb.append(rp.pieceType.name().charAt(0) == 'W' ? letter : Character.toLowerCase(letter));
+            }
+        }
+        sb.append('\n');
+    }
+
+    /**
+     * Appends a full board frame with its sequence number, for delta-mode clients.
+     */
+    static void appendSync(Position position, StringBuilder sb) {
+        sb.append("SYNC ").append(position.ply()).append(' ');
+        position.appendBoard(sb);
+        sb.append('\n');
+    }
+
+    private void queue(SelectionKey key, Session session, StringBuilder replies) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(replies.toString().getBytes(StandardCharsets.US_ASCII));
+        if (session.pending != null) {
+            ByteBuffer merged = ByteBuffer.allocate(session.pending.remaining() + bytes.remaining());
+            merged.put(session.pending).put(bytes).flip();
+            session.pending = merged;
+        } else {
+            session.pending = bytes;
+        }
+        write(key);
+    }
+
+    /**
+     * Writes pending output. While any remains the connection is not read, so a client
+     * that sends moves without reading the answers is held back by TCP flow control
+     * instead of growing its pending output without bound; reading resumes once the
+     * output has drained.
+     */
+    private void write(SelectionKey key) throws IOException {
+        Session session = (Session) key.attachment();
+        if (session.pending == null) {
+            key.interestOps(SelectionKey.OP_READ);
+            return;
+        }
+        ((SocketChannel) key.channel()).write(session.pending);
+        if (session.pending.hasRemaining()) {
+            key.interestOps(SelectionKey.OP_WRITE);
+        } else {
+            session.pending = null;
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Already closing.
+        }
+    }
+}
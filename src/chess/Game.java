@@ -0,0 +1,1215 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * One game of chess: the board, the side to move, castling and en passant rights, the
+ * position keys and the moves played. Every game is independent, so hosts that run
+ * several games (such as ChessServer) give each one its own Game, and games on
+ * different threads need no locking as long as each Game is used by one thread at a
+ * time. Chess keeps one default game behind its static API.
+ */
+final class Game {
+    private Chess.Player currentPlayer = Chess.Player.white;
+    private Piece[][] boardInternal;
+
+    // Added for en passant support:
+    private int[] enPassantTargetSquare = null;
+
+    // Castling rights, one bit each (see Chess.WHITE_KINGSIDE); cleared when a king or
+    // rook leaves its home square or a rook is captured there.
+    private int castlingRights = Chess.ALL_CASTLING_RIGHTS;
+
+    // The starting position; start() copies it rather than building the board piece by piece.
+    private static final Piece[][] START_BOARD = {
+            { Rook.BLACK, Knight.BLACK, Bishop.BLACK, Queen.BLACK, King.BLACK, Bishop.BLACK, Knight.BLACK, Rook.BLACK },
+            { Pawn.BLACK, Pawn.BLACK, Pawn.BLACK, Pawn.BLACK, Pawn.BLACK, Pawn.BLACK, Pawn.BLACK, Pawn.BLACK },
+            new Piece[8], new Piece[8], new Piece[8], new Piece[8],
+            { Pawn.WHITE, Pawn.WHITE, Pawn.WHITE, Pawn.WHITE, Pawn.WHITE, Pawn.WHITE, Pawn.WHITE, Pawn.WHITE },
+            { Rook.WHITE, Knight.WHITE, Bishop.WHITE, Queen.WHITE, King.WHITE, Bishop.WHITE, Knight.WHITE, Rook.WHITE }
+    };
+    private static final long START_KEY = Zobrist.computeKey(START_BOARD, true, null, Chess.ALL_CASTLING_RIGHTS);
+    private static final long START_PAWN_KEY = Zobrist.computePawnKey(START_BOARD);
+
+    // Zobrist keys for the whole position and for the pawns alone, kept in step with boardInternal.
+    // The pawn table and the legal-move cache are keyed by position, so all games share them.
+    private long positionKey;
+    private long pawnKey;
+    private static final PawnHashTable pawnHashTable = new PawnHashTable(1 << 14);
+    private static final LegalMoveCache legalMoveCache = new LegalMoveCache(1 << 12);
+
+    // Moves played since start or loadFen, and the last published snapshot of this game.
+    // The snapshot is replaced, never modified, so other threads may read it at any time.
+    private int ply;
+    private volatile Position snapshot;
+
+    // Packed moves played since start or loadFen; the first ply entries are valid.
+    private short[] history;
+
+    // The squares a move changed, as bits (row * 8 + col), collected while it is applied
+    // for delta results (see playDelta).
+    private long changedSquares;
+
+    // Pin and check-evasion masks (bit = row * 8 + col) for one side, computed once per
+    // position by computeLegalityMasks and invalidated whenever the board changes.
+    private boolean masksValid = false;
+    private boolean masksWhite;
+    private int maskKingSquare;
+    private int checkerCount;
+    private long pinnedMask;
+    private long checkMask;
+
+    // Key of the last position isLegalMove missed the legal-move cache on; a second miss
+    // on the same position fills the cache.
+    private long lastMissKey;
+
+    // Scratch list cacheLegalMoves generates into before copying the moves to their exact
+    // length. Created on first use, so copies made for searches (which generate into
+    // their own buffers) never allocate it.
+    private short[] moveScratch;
+
+    // Knight steps (row, col), for finding knight checkers.
+    private static final int[][] KNIGHT_JUMPS = {
+            {-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}
+    };
+
+    /**
+     * Creates a game at the standard starting position.
+     */
+    Game() {
+        start();
+    }
+
+    /**
+     * Makes an independent copy of this game, with its own board, so that moves can be
+     * tried on the copy without touching the original. The copy shares the snapshot
+     * until it plays a move.
+     * @return A deep copy of the game.
+     */
+    Game copy() {
+        return new Game(this);
+    }
+
+    private Game(Game other) {
+        currentPlayer = other.currentPlayer;
+        boardInternal = copyBoard(other.boardInternal);
+        enPassantTargetSquare = other.enPassantTargetSquare;
+        castlingRights = other.castlingRights;
+        positionKey = other.positionKey;
+        pawnKey = other.pawnKey;
+        ply = other.ply;
+        history = other.history.clone();
+        snapshot = other.snapshot;
+    }
+
+    // Pieces are shared flyweights, so copying a board only copies 64 references.
+    private static Piece[][] copyBoard(Piece[][] board) {
+        Piece[][] copy = new Piece[8][];
+        for (int r = 0; r < 8; r++) {
+            copy[r] = board[r].clone();
+        }
+        return copy;
+    }
+
+    ReturnPlay play(String move) {
+        long startTime = ChessMetrics.start();
+        ReturnPlay ret = playMove(move, false);
+        ChessMetrics.stop(ChessMetrics.Phase.PLAY, startTime);
+        return ret;
+    }
+
+    /**
+     * Plays a move like play(String), but returns a delta: piecesOnBoard is left null
+     * and changedSquares lists only the squares the move changed (from and to, plus the
+     * rook's squares for castling and the captured pawn's square for en passant).
+     * Clients that lose track call resync.
+     * @param move The move, as for play(String).
+     * @return The result, with changedSquares instead of piecesOnBoard.
+     */
+    ReturnPlay playDelta(String move) {
+        long startTime = ChessMetrics.start();
+        ReturnPlay ret = playMove(move, true);
+        ChessMetrics.stop(ChessMetrics.Phase.PLAY, startTime);
+        return ret;
+    }
+
+    /**
+     * Plays a packed move (see Move), such as one from legalMoveList. The flags must
+     * match the position: a move whose flags disagree with the board is illegal.
+     * @param move The packed move.
+     * @return The result, as for play(String).
+     */
+    ReturnPlay play(short move) {
+        long startTime = ChessMetrics.start();
+        ReturnPlay ret = playMove(move, false, false);
+        ChessMetrics.stop(ChessMetrics.Phase.PLAY, startTime);
+        return ret;
+    }
+
+    /**
+     * Splits trimmed text at runs of whitespace, like split("\\s+") but without
+     * loading java.util.regex, which costs several milliseconds on the first play()
+     * in a fresh JVM.
+     * @param text Text with no leading or trailing whitespace.
+     * @return The words; a single empty word if the text is empty.
+     */
+    private static String[] splitWords(String text) {
+        int n = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (!isSpace(text.charAt(i)) && (i == 0 || isSpace(text.charAt(i - 1)))) n++;
+        }
+        if (n == 0) return new String[] { text };
+        String[] words = new String[n];
+        int w = 0;
+        for (int i = 0; i < text.length(); ) {
+            while (i < text.length() && isSpace(text.charAt(i))) i++;
+            int start = i;
+            while (i < text.length() && !isSpace(text.charAt(i))) i++;
+            if (i > start) words[w++] = text.substring(start, i);
+        }
+        return words;
+    }
+
+    /** The characters the regex \s matches. */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\013' || c == '\f' || c == '\r';
+    }
+
+    private ReturnPlay playMove(String move, boolean delta) {
+        move = move.trim();
+
+        // Handle resign
+        if (move.equalsIgnoreCase("resign")) {
+            ReturnPlay ret = new ReturnPlay();
+            ChessMetrics.allocated(ChessMetrics.Allocation.RETURN_PLAY, 1);
+            ChessMetrics.outcome(ChessMetrics.Outcome.RESIGN);
+            fillBoard(ret, 0L, delta);
+            ret.message = (currentPlayer == Chess.Player.white)
+                    ? ReturnPlay.Message.RESIGN_BLACK_WINS
+                    : ReturnPlay.Message.RESIGN_WHITE_WINS;
+            return ret;
+        }
+
+
+        String[] tokens = splitWords(move);
+        boolean drawRequested = false;
+        if (tokens[tokens.length - 1].equals("draw?")) {
+            drawRequested = true;
+            String[] newTokens = new String[tokens.length - 1];
+            System.arraycopy(tokens, 0, newTokens, 0, tokens.length - 1);
+            tokens = newTokens;
+        }
+
+        if (tokens.length < 2) {
+            return illegalMove(ChessMetrics.IllegalReason.MALFORMED, delta);
+        }
+
+
+        String src = tokens[0];
+        String dest = tokens[1];
+        if (src.length() != 2 || dest.length() != 2) {
+            return illegalMove(ChessMetrics.IllegalReason.MALFORMED, delta);
+        }
+
+        char srcFile = src.charAt(0), destFile = dest.charAt(0);
+        int srcRank = src.charAt(1) - '0';
+        int destRank = dest.charAt(1) - '0';
+        int srcCol = srcFile - 'a', srcRow = 8 - srcRank;
+        int destCol = destFile - 'a', destRow = 8 - destRank;
+
+        // Board bounds check
+        if (!inBounds(srcRow, srcCol) || !inBounds(destRow, destCol)) {
+            return illegalMove(ChessMetrics.IllegalReason.OUT_OF_BOUNDS, delta);
+        }
+
+        char promoChar = (tokens.length == 3) ? tokens[2].charAt(0) : 'Q';
+        int promotedType = promotionType(promoChar);
+        return playMove(encodeMove(srcRow * 8 + srcCol, destRow * 8 + destCol, promotedType), drawRequested, delta);
+    }
+
+    /** The piece type a promotion letter names; anything else means a queen. */
+    private static int promotionType(char promoChar) {
+        if (promoChar == 'N' || promoChar == 'n') {
+            return Piece.KNIGHT;
+        } else if (promoChar == 'R' || promoChar == 'r') {
+            return Piece.ROOK;
+        } else if (promoChar == 'B' || promoChar == 'b') {
+            return Piece.BISHOP;
+        }
+        return Piece.QUEEN;
+    }
+
+    /**
+     * Converts a move in play notation to a packed move of the current position, if it is
+     * legal, without playing it. With makeMove this replays a game without building a
+     * result, scanning for mate or publishing a snapshot for every move. A trailing
+     * "draw?" is ignored, and resign is not a move.
+     * @param move The move, as for play(String).
+     * @return The packed move, or Move.NONE if it is malformed or illegal.
+     */
+    short legalMove(String move) {
+        String[] tokens = splitWords(move.trim());
+        int count = tokens[tokens.length - 1].equals("draw?") ? tokens.length - 1 : tokens.length;
+        if (count < 2 || tokens[0].length() != 2 || tokens[1].length() != 2) {
+            return Move.NONE;
+        }
+        int srcCol = tokens[0].charAt(0) - 'a', srcRow = 8 - (tokens[0].charAt(1) - '0');
+        int destCol = tokens[1].charAt(0) - 'a', destRow = 8 - (tokens[1].charAt(1) - '0');
+        if (!inBounds(srcRow, srcCol) || !inBounds(destRow, destCol)
+                || !isLegalMove(srcRow, srcCol, destRow, destCol)) {
+            return Move.NONE;
+        }
+        int promotedType = count == 3 ? promotionType(tokens[2].charAt(0)) : Piece.QUEEN;
+        return encodeMove(srcRow * 8 + srcCol, destRow * 8 + destCol, promotedType);
+    }
+
+    private ReturnPlay playMove(short move, boolean drawRequested, boolean delta) {
+        int srcRow = Move.from(move) / 8, srcCol = Move.from(move) % 8;
+        int destRow = Move.to(move) / 8, destCol = Move.to(move) % 8;
+
+        // A move listed for a position whose legal moves are cached needs no validation.
+        short[] cached = legalMoveCache.get(positionKey);
+        ChessMetrics.IllegalReason illegalReason = null;
+        if (cached == null || !LegalMoveCache.contains(cached, move)) {
+            illegalReason = checkMove(srcRow, srcCol, destRow, destCol);
+            if (illegalReason == null && move != encodeMove(Move.from(move), Move.to(move), Move.promotionType(move))) {
+                illegalReason = ChessMetrics.IllegalReason.MALFORMED;
+            }
+        }
+        if (illegalReason != null) {
+            // A rejected move is usually retried in the same position, so list the
+            // position's moves now and let the retry be answered from the cache.
+            if (cached == null) cacheLegalMoves();
+            return illegalMove(illegalReason, delta);
+        }
+
+        boolean opponentIsWhite = currentPlayer != Chess.Player.white;
+        changedSquares = 0L;
+        makeMove(move);
+        boolean opponentInCheck = isKingInCheck(opponentIsWhite);
+        boolean opponentCheckmate = opponentInCheck && isCheckmate(opponentIsWhite);
+        publishSnapshot();
+
+
+        ReturnPlay ret = new ReturnPlay();
+        ChessMetrics.allocated(ChessMetrics.Allocation.RETURN_PLAY, 1);
+        fillBoard(ret, changedSquares, delta);
+        if (opponentCheckmate) {
+            ret.message = opponentIsWhite
+                    ? ReturnPlay.Message.CHECKMATE_BLACK_WINS
+                    : ReturnPlay.Message.CHECKMATE_WHITE_WINS;
+            ChessMetrics.outcome(ChessMetrics.Outcome.CHECKMATE);
+        } else if (opponentInCheck) {
+            ret.message = ReturnPlay.Message.CHECK;
+            ChessMetrics.outcome(ChessMetrics.Outcome.CHECK);
+        } else if (drawRequested) {
+            ret.message = ReturnPlay.Message.DRAW;
+            ChessMetrics.outcome(ChessMetrics.Outcome.DRAW);
+        } else {
+            ret.message = null;
+            ChessMetrics.outcome(ChessMetrics.Outcome.MOVE);
+        }
+        return ret;
+    }
+
+    /**
+     * Applies a legal packed move, such as one from generateMoves or generateCaptures,
+     * without validating it, looking for check or mate, publishing a snapshot or building
+     * a result; play does all of those. Searches use it to try moves on a copy, whose
+     * snapshot() then still shows the position the copy was made from.
+     * @param move A legal move of the current position.
+     */
+    void makeMove(short move) {
+        int srcRow = Move.from(move) / 8, srcCol = Move.from(move) % 8;
+        int destRow = Move.to(move) / 8, destCol = Move.to(move) % 8;
+        Piece movingPiece = boardInternal[srcRow][srcCol];
+        boolean isWhiteTurn = (currentPlayer == Chess.Player.white);
+        int flags = Move.flags(move);
+
+
+        if (Move.isCastle(move)) {
+            setSquare(destRow, destCol, movingPiece);
+            setSquare(srcRow, srcCol, null);
+            if (flags == Move.KING_CASTLE) {
+                Piece rook = boardInternal[srcRow][7];
+                setSquare(srcRow, destCol - 1, rook);
+                setSquare(srcRow, 7, null);
+            } else {
+                Piece rook = boardInternal[srcRow][0];
+                setSquare(srcRow, destCol + 1, rook);
+                setSquare(srcRow, 0, null);
+            }
+        } else if (Move.isPromotion(move)) {
+            int promotedType = Move.promotionType(move);
+            Piece promoted = Piece.fromCode(movingPiece.isWhite() ? promotedType : promotedType + 6);
+            setSquare(destRow, destCol, promoted);
+            setSquare(srcRow, srcCol, null);
+        } else if (flags == Move.EN_PASSANT) {
+
+            setSquare(destRow, destCol, movingPiece);
+            setSquare(srcRow, srcCol, null);
+            int capturedRow = movingPiece.isWhite() ? destRow + 1 : destRow - 1;
+            setSquare(capturedRow, destCol, null);
+        } else {
+            setSquare(destRow, destCol, movingPiece);
+            setSquare(srcRow, srcCol, null);
+        }
+
+
+        updateCastlingRights(movingPiece, srcRow, srcCol, destRow, destCol);
+
+        if (enPassantTargetSquare != null) {
+            positionKey ^= Zobrist.EN_PASSANT_FILE[enPassantTargetSquare[1]];
+        }
+        // If a pawn moved two squares forward next to an enemy pawn, mark the en passant
+        // target square. Without such a pawn the capture is impossible, so the position
+        // (and its key) is the same as if the pawn had arrived some other way.
+        if (flags == Move.DOUBLE_PUSH && canCaptureEnPassant(boardInternal, destRow, destCol, !isWhiteTurn)) {
+            int targetRow = (srcRow + destRow) / 2;
+            enPassantTargetSquare = new int[] { targetRow, srcCol };
+            positionKey ^= Zobrist.EN_PASSANT_FILE[srcCol];
+        } else {
+            enPassantTargetSquare = null;
+        }
+
+
+        currentPlayer = (currentPlayer == Chess.Player.white) ? Chess.Player.black : Chess.Player.white;
+        positionKey ^= Zobrist.BLACK_TO_MOVE;
+        if (ply == history.length) {
+            history = Arrays.copyOf(history, ply * 2);
+        }
+        history[ply++] = move;
+    }
+
+    void start() {
+        currentPlayer = Chess.Player.white;
+        boardInternal = copyBoard(START_BOARD);
+        enPassantTargetSquare = null;
+        castlingRights = Chess.ALL_CASTLING_RIGHTS;
+        positionKey = START_KEY;
+        pawnKey = START_PAWN_KEY;
+        ply = 0;
+        history = new short[64];
+        masksValid = false;
+        publishSnapshot();
+    }
+
+    /**
+     * Loads a position from Forsyth-Edwards Notation. The board, side to move, castling
+     * rights and en passant square are used; the move counters, if present, are ignored.
+     *
+     * @param fen The FEN string, e.g. "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1".
+     * @throws IllegalArgumentException If the string is not a valid FEN position.
+     */
+    void loadFen(String fen) {
+        String[] fields = splitWords(fen.trim());
+        if (fields.length < 2) {
+            throw new IllegalArgumentException("Incomplete FEN: " + fen);
+        }
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != 8) {
+            throw new IllegalArgumentException("FEN board must have 8 ranks: " + fen);
+        }
+        Piece[][] board = new Piece[8][8];
+        for (int r = 0; r < 8; r++) {
+            int c = 0;
+            for (char ch : ranks[r].toCharArray()) {
+                if (ch >= '1' && ch <= '8') {
+                    c += ch - '0';
+                    continue;
+                }
+                if (c >= 8) {
+                    throw new IllegalArgumentException("FEN rank too long: " + ranks[r]);
+                }
+                int type = "pnbrqk".indexOf(Character.toLowerCase(ch));
+                if (type < 0) {
+                    throw new IllegalArgumentException("Bad FEN piece: " + ch);
+                }
+                board[r][c] = Piece.fromCode(Character.isUpperCase(ch) ? type : type + 6);
+                c++;
+            }
+            if (c != 8) {
+                throw new IllegalArgumentException("FEN rank must cover 8 files: " + ranks[r]);
+            }
+        }
+
+        int rights = 0;
+        if (fields.length > 2) {
+            for (char ch : fields[2].toCharArray()) {
+                if (ch == 'K') rights |= Chess.WHITE_KINGSIDE;
+                else if (ch == 'Q') rights |= Chess.WHITE_QUEENSIDE;
+                else if (ch == 'k') rights |= Chess.BLACK_KINGSIDE;
+                else if (ch == 'q') rights |= Chess.BLACK_QUEENSIDE;
+                else if (ch != '-') throw new IllegalArgumentException("Bad FEN castling field: " + fields[2]);
+            }
+        }
+
+        int[] epSquare = null;
+        if (fields.length > 3 && !fields[3].equals("-")) {
+            String sq = fields[3];
+            int col = sq.length() == 2 ? sq.charAt(0) - 'a' : -1;
+            int row = sq.length() == 2 ? 8 - (sq.charAt(1) - '0') : -1;
+            if (!inBounds(row, col)) {
+                throw new IllegalArgumentException("Bad FEN en passant square: " + sq);
+            }
+            // The pawn that just made the double step stands one square beyond the target.
+            // As after a double push in play, the square only counts if it can be captured.
+            int pawnRow = row == 2 ? 3 : 4;
+            boolean whiteToMove = !fields[1].equals("b");
+            if (board[pawnRow][col] instanceof Pawn && board[pawnRow][col].isWhite() != whiteToMove
+                    && canCaptureEnPassant(board, pawnRow, col, whiteToMove)) {
+                epSquare = new int[] { row, col };
+            }
+        }
+
+        boardInternal = board;
+        currentPlayer = fields[1].equals("b") ? Chess.Player.black : Chess.Player.white;
+        castlingRights = rights;
+        enPassantTargetSquare = epSquare;
+        positionKey = Zobrist.computeKey(boardInternal, currentPlayer == Chess.Player.white, epSquare, rights);
+        pawnKey = Zobrist.computePawnKey(boardInternal);
+        ply = 0;
+        history = new short[64];
+        masksValid = false;
+        publishSnapshot();
+    }
+
+    /**
+     * Returns whether a pawn of the capturing side stands beside a pawn that has just
+     * made a double step, so that en passant is possible (ignoring pins).
+     * @param board         The board after the double step.
+     * @param pawnRow       Row of the pawn that made the double step.
+     * @param pawnCol       Its column.
+     * @param whiteCaptures True if white would capture.
+     */
+    private static boolean canCaptureEnPassant(Piece[][] board, int pawnRow, int pawnCol, boolean whiteCaptures) {
+        for (int c = pawnCol - 1; c <= pawnCol + 1; c += 2) {
+            Piece p = inBounds(pawnRow, c) ? board[pawnRow][c] : null;
+            if (p instanceof Pawn && p.isWhite() == whiteCaptures) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the game still allows the given castling move. Rights are kept in
+     * the game state rather than derived from piece history.
+     * @param white    True for white's castling.
+     * @param kingside True for kingside (toward file h), false for queenside.
+     * @return True if the right has not been lost.
+     */
+    boolean hasCastlingRight(boolean white, boolean kingside) {
+        int bit = white
+                ? (kingside ? Chess.WHITE_KINGSIDE : Chess.WHITE_QUEENSIDE)
+                : (kingside ? Chess.BLACK_KINGSIDE : Chess.BLACK_QUEENSIDE);
+        return (castlingRights & bit) != 0;
+    }
+
+    /**
+     * Returns the castling rights bits of the current position.
+     * @return A combination of Chess.WHITE_KINGSIDE, Chess.WHITE_QUEENSIDE, Chess.BLACK_KINGSIDE and Chess.BLACK_QUEENSIDE.
+     */
+    int castlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Clears the castling rights a move gives up: a king move loses both of its side's
+     * rights, and any move from or onto a corner square loses that corner's right.
+     */
+    private void updateCastlingRights(Piece movingPiece, int srcRow, int srcCol, int destRow, int destCol) {
+        int rights = castlingRights;
+        if (movingPiece instanceof King) {
+            rights &= movingPiece.isWhite()
+                    ? ~(Chess.WHITE_KINGSIDE | Chess.WHITE_QUEENSIDE)
+                    : ~(Chess.BLACK_KINGSIDE | Chess.BLACK_QUEENSIDE);
+        }
+        rights &= ~cornerRight(srcRow, srcCol) & ~cornerRight(destRow, destCol);
+        if (rights != castlingRights) {
+            positionKey ^= Zobrist.CASTLING[castlingRights] ^ Zobrist.CASTLING[rights];
+            castlingRights = rights;
+        }
+    }
+
+    private static int cornerRight(int row, int col) {
+        if (row == 7 && col == 7) return Chess.WHITE_KINGSIDE;
+        if (row == 7 && col == 0) return Chess.WHITE_QUEENSIDE;
+        if (row == 0 && col == 7) return Chess.BLACK_KINGSIDE;
+        if (row == 0 && col == 0) return Chess.BLACK_QUEENSIDE;
+        return 0;
+    }
+
+    /**
+     * Returns the Zobrist key of the current position (pieces, side to move, castling rights,
+     * and the en passant file when an en passant capture is possible). Positions that
+     * differ only in a double push no pawn can take en passant share a key.
+     * @return The position key.
+     */
+    long positionKey() {
+        return positionKey;
+    }
+
+    /**
+     * Returns an immutable snapshot of the current position as of the last accepted move,
+     * start or loadFen. Safe to call from any thread; the snapshot is never modified,
+     * and readers holding it do not block moves.
+     * @return The position snapshot.
+     */
+    Position snapshot() {
+        return snapshot;
+    }
+
+    private void publishSnapshot() {
+        snapshot = position();
+    }
+
+    /**
+     * Builds a snapshot of the current position without publishing it, for callers that
+     * move with makeMove, after which snapshot() still shows an earlier position.
+     * @return A new position snapshot.
+     */
+    Position position() {
+        return new Position(boardInternal, currentPlayer == Chess.Player.white, castlingRights,
+                enPassantTargetSquare, positionKey, ply);
+    }
+
+    /**
+     * Returns the Zobrist key of the current pawn structure.
+     * @return The pawn key.
+     */
+    long pawnKey() {
+        return pawnKey;
+    }
+
+    /**
+     * Returns the pawn-structure score (passed, isolated and doubled pawns) of the current
+     * position, served from the pawn hash table when the structure has been seen before.
+     * @return White's pawn-structure score minus black's, in centipawns.
+     */
+    int pawnStructureScore() {
+        return pawnHashTable.probe(pawnKey, boardInternal);
+    }
+
+    /**
+     * Returns the pawn hash table, for its hit-rate counters.
+     * @return The pawn hash table.
+     */
+    PawnHashTable pawnHashTable() {
+        return pawnHashTable;
+    }
+
+    /**
+     * Writes a square of the real board and keeps the position and pawn keys in step.
+     * Simulations that restore the board afterwards write boardInternal directly.
+     */
+    private void setSquare(int row, int col, Piece piece) {
+        Piece old = boardInternal[row][col];
+        long oldKey = Zobrist.pieceKey(old, row, col);
+        long newKey = Zobrist.pieceKey(piece, row, col);
+        positionKey ^= oldKey ^ newKey;
+        if (old instanceof Pawn) pawnKey ^= oldKey;
+        if (piece instanceof Pawn) pawnKey ^= newKey;
+        boardInternal[row][col] = piece;
+        changedSquares |= 1L << (row * 8 + col);
+        masksValid = false;
+    }
+
+    /**
+     * Checks whether the side to move may play the given move: the piece must belong
+     * to the side to move, the move must be valid for the piece (or an en passant capture),
+     * it must not leave the mover's king in check, and a castling king must not start in,
+     * pass through or land on an attacked square.
+     *
+     * @param srcRow  Source row index (0-7).
+     * @param srcCol  Source column index (0-7).
+     * @param destRow Destination row index (0-7).
+     * @param destCol Destination column index (0-7).
+     * @return True if the move is legal.
+     */
+    boolean isLegalMove(int srcRow, int srcCol, int destRow, int destCol) {
+        short[] cached = legalMoveCache.get(positionKey);
+        if (cached == null && positionKey == lastMissKey) {
+            // The second question about this position: listing all its moves once is
+            // cheaper than checking each further query on its own.
+            cached = cacheLegalMoves();
+        }
+        if (cached != null) {
+            return LegalMoveCache.contains(cached, srcRow * 8 + srcCol, destRow * 8 + destCol);
+        }
+        lastMissKey = positionKey;
+        return checkMove(srcRow, srcCol, destRow, destCol) == null;
+    }
+
+    /**
+     * Performs the isLegalMove checks and reports the first one that fails.
+     * @return The reason the move is illegal, or null if it is legal.
+     */
+    private ChessMetrics.IllegalReason checkMove(int srcRow, int srcCol, int destRow, int destCol) {
+        Piece movingPiece = boardInternal[srcRow][srcCol];
+        if (movingPiece == null) {
+            return ChessMetrics.IllegalReason.NO_PIECE;
+        }
+        if (movingPiece.isWhite() != (currentPlayer == Chess.Player.white)) {
+            return ChessMetrics.IllegalReason.WRONG_COLOR;
+        }
+
+        // Validate piece movement (bypass check for en passant)
+        boolean isEnPassant = isEnPassant(movingPiece, srcRow, srcCol, destRow, destCol);
+        if (!isEnPassant && !isMoveValid(movingPiece, srcRow, srcCol, destRow, destCol)) {
+            return ChessMetrics.IllegalReason.INVALID_PIECE_MOVE;
+        }
+
+        // Check that the move does not leave the player's king in check. Only king moves
+        // and en passant need a full simulation; everything else is decided by the masks.
+        if (!(movingPiece instanceof King) && !isEnPassant
+                && prepareLegalityMasks(movingPiece.isWhite())) {
+            if (!passesLegalityMasks(srcRow, srcCol, destRow, destCol)) {
+                return ChessMetrics.IllegalReason.LEAVES_KING_IN_CHECK;
+            }
+        } else if (!simulateAndCheck(movingPiece, srcRow, srcCol, destRow, destCol,
+                isPromotion(movingPiece, destRow))) {
+            return ChessMetrics.IllegalReason.LEAVES_KING_IN_CHECK;
+        }
+
+        if (isCastling(movingPiece, srcRow, srcCol, destRow, destCol)) {
+            if (isKingInCheck(movingPiece.isWhite())) {
+                return ChessMetrics.IllegalReason.CASTLE_THROUGH_CHECK;
+            }
+            int step = (destCol > srcCol) ? 1 : -1;
+            for (int c = srcCol; c != destCol + step; c += step) {
+                if (isSquareUnderAttack(srcRow, c, !movingPiece.isWhite())) {
+                    return ChessMetrics.IllegalReason.CASTLE_THROUGH_CHECK;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lists every legal move for the side to move, in the notation accepted by play
+     * (for example "e2 e4", or "e7 e8 Q" for a promotion; under-promotions are listed too).
+     * @return The legal moves.
+     */
+    ArrayList<String> legalMoves() {
+        short[] packed = legalMoveList();
+        ArrayList<String> moves = new ArrayList<>(packed.length);
+        for (short m : packed) {
+            moves.add(Move.toString(m));
+        }
+        return moves;
+    }
+
+    /**
+     * Writes the legal moves of the side to move into a caller-owned buffer, such as one
+     * of a search's per-ply move lists, in legalMoveList order. A cached list is copied;
+     * otherwise the moves are generated straight into the buffer and then cached.
+     * @param buffer Receives the packed moves; at least Move.MAX_MOVES long.
+     * @return The number of moves.
+     */
+    int generateMoves(short[] buffer) {
+        short[] moves = legalMoveCache.get(positionKey);
+        if (moves != null) {
+            System.arraycopy(moves, 0, buffer, 0, moves.length);
+            return moves.length;
+        }
+        int n = generateLegalMoves(buffer);
+        legalMoveCache.put(positionKey, Arrays.copyOf(buffer, n));
+        return n;
+    }
+
+    /**
+     * Returns the legal moves of the side to move, packed (see Move) and ordered by source
+     * and then destination square, from the legal-move cache when the position has been
+     * listed before. Promotions appear once per piece, queen first.
+     * @return The moves; shared with the cache, so do not modify.
+     */
+    short[] legalMoveList() {
+        short[] moves = legalMoveCache.get(positionKey);
+        return moves != null ? moves : cacheLegalMoves();
+    }
+
+    // Generates the legal moves of the position and caches them, for callers that have
+    // just missed the cache.
+    private short[] cacheLegalMoves() {
+        if (moveScratch == null) moveScratch = new short[Move.MAX_MOVES];
+        short[] moves = Arrays.copyOf(moveScratch, generateLegalMoves(moveScratch));
+        legalMoveCache.put(positionKey, moves);
+        return moves;
+    }
+
+    /**
+     * Copies the legal captures of the side to move into a caller-owned buffer, for
+     * quiescence searches: en passant is left out and a capturing promotion is listed
+     * only as a queen. Unless the position's moves are cached, only moves from our
+     * pieces onto theirs are tested rather than every square pair.
+     * @param buffer Receives the packed moves; at least Move.MAX_MOVES long.
+     * @return The number of captures.
+     */
+    int generateCaptures(short[] buffer) {
+        int n = 0;
+        short[] cached = legalMoveCache.get(positionKey);
+        if (cached != null) {
+            for (short m : cached) {
+                if (Move.isCapture(m) && Move.flags(m) != Move.EN_PASSANT
+                        && (!Move.isPromotion(m) || Move.promotionType(m) == Piece.QUEEN)) {
+                    buffer[n++] = m;
+                }
+            }
+            return n;
+        }
+        // Squares of our pieces and theirs, as bits (row * 8 + col).
+        boolean white = currentPlayer == Chess.Player.white;
+        long ours = 0L, theirs = 0L;
+        for (int sq = 0; sq < 64; sq++) {
+            Piece p = boardInternal[sq / 8][sq % 8];
+            if (p == null) continue;
+            if (p.isWhite() == white) ours |= 1L << sq;
+            else theirs |= 1L << sq;
+        }
+        for (long from = ours; from != 0; from &= from - 1) {
+            int src = Long.numberOfTrailingZeros(from);
+            for (long to = theirs; to != 0; to &= to - 1) {
+                int dest = Long.numberOfTrailingZeros(to);
+                if (checkMove(src / 8, src % 8, dest / 8, dest % 8) == null) {
+                    buffer[n++] = encodeMove(src, dest, Piece.QUEEN);
+                }
+            }
+        }
+        return n;
+    }
+
+    // Writes the legal moves into moves, which is at least Move.MAX_MOVES long, and returns their count.
+    private int generateLegalMoves(short[] moves) {
+        int n = 0;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                Piece p = boardInternal[r][c];
+                if (p == null || p.isWhite() != (currentPlayer == Chess.Player.white)) continue;
+                for (int dr = 0; dr < 8; dr++) {
+                    for (int dc = 0; dc < 8; dc++) {
+                        if (checkMove(r, c, dr, dc) != null) continue;
+                        int from = r * 8 + c, to = dr * 8 + dc;
+                        if (isPromotion(p, dr)) {
+                            moves[n++] = encodeMove(from, to, Piece.QUEEN);
+                            moves[n++] = encodeMove(from, to, Piece.ROOK);
+                            moves[n++] = encodeMove(from, to, Piece.BISHOP);
+                            moves[n++] = encodeMove(from, to, Piece.KNIGHT);
+                        } else {
+                            moves[n++] = encodeMove(from, to, Piece.QUEEN);
+                        }
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Packs a move of the current position, deriving its flags from the board.
+     * @param promotionType Piece type a pawn reaching the last rank becomes; ignored otherwise.
+     */
+    private short encodeMove(int from, int to, int promotionType) {
+        int srcRow = from / 8, srcCol = from % 8, destRow = to / 8, destCol = to % 8;
+        Piece p = boardInternal[srcRow][srcCol];
+        boolean capture = boardInternal[destRow][destCol] != null;
+        int flags;
+        if (isPromotion(p, destRow)) {
+            flags = Move.promotionFlags(promotionType, capture);
+        } else if (isCastling(p, srcRow, srcCol, destRow, destCol)) {
+            flags = destCol > srcCol ? Move.KING_CASTLE : Move.QUEEN_CASTLE;
+        } else if (isEnPassant(p, srcRow, srcCol, destRow, destCol)) {
+            flags = Move.EN_PASSANT;
+        } else if (p instanceof Pawn && Math.abs(destRow - srcRow) == 2) {
+            flags = Move.DOUBLE_PUSH;
+        } else {
+            flags = capture ? Move.CAPTURE : Move.QUIET;
+        }
+        return Move.of(from, to, flags);
+    }
+
+    /**
+     * Returns the moves played since the game started or was loaded.
+     * @return The packed moves, oldest first.
+     */
+    short[] moveHistory() {
+        return Arrays.copyOf(history, ply);
+    }
+
+    /**
+     * Returns the legal-move cache, for its hit and miss counters.
+     * @return The legal-move cache.
+     */
+    LegalMoveCache legalMoveCache() {
+        return legalMoveCache;
+    }
+
+    /**
+     * Returns the piece on a square of the current board.
+     * @param row Row index (0-7).
+     * @param col Column index (0-7).
+     * @return The piece, or null if the square is empty.
+     */
+    Piece pieceAt(int row, int col) {
+        return boardInternal[row][col];
+    }
+
+    /**
+     * Returns true if the side to move is in check.
+     * @return True if the side to move's king is attacked.
+     */
+    boolean isInCheck() {
+        return isKingInCheck(currentPlayer == Chess.Player.white);
+    }
+
+    /**
+     * Returns true if white is to move.
+     * @return True for white, false for black.
+     */
+    boolean isWhiteToMove() {
+        return currentPlayer == Chess.Player.white;
+    }
+
+    private static boolean isPromotion(Piece movingPiece, int destRow) {
+        if (!(movingPiece instanceof Pawn)) {
+            return false;
+        }
+        return (movingPiece.isWhite() && destRow == 0) || (!movingPiece.isWhite() && destRow == 7);
+    }
+
+    private static boolean isCastling(Piece movingPiece, int srcRow, int srcCol, int destRow, int destCol) {
+        return movingPiece instanceof King && srcRow == destRow && Math.abs(srcCol - destCol) == 2;
+    }
+
+    // Only possible for pawn diagonal moves into an empty square
+    private boolean isEnPassant(Piece movingPiece, int srcRow, int srcCol, int destRow, int destCol) {
+        if (!(movingPiece instanceof Pawn)) {
+            return false;
+        }
+        int direction = movingPiece.isWhite() ? -1 : 1;
+        int rowDiff = destRow - srcRow;
+        return Math.abs(srcCol - destCol) == 1 && rowDiff == direction
+                && boardInternal[destRow][destCol] == null
+                && enPassantTargetSquare != null
+                && enPassantTargetSquare[0] == destRow
+                && enPassantTargetSquare[1] == destCol;
+    }
+
+    /**
+     * Makes sure the pin and check-evasion masks describe the given side in the current
+     * position, computing them if the board has changed since they were last built.
+     * @param white The side whose king the masks protect.
+     * @return False if that side has no king, in which case the masks cannot be used.
+     */
+    private boolean prepareLegalityMasks(boolean white) {
+        if (!masksValid || masksWhite != white) {
+            computeLegalityMasks(white);
+        }
+        return maskKingSquare >= 0;
+    }
+
+    /**
+     * Tests a non-king, non-en-passant move against the masks. The move must already be
+     * valid for the piece. It is legal if it is not a double check, it captures the checker
+     * or blocks its ray (when in check), and a pinned piece stays on its pin line.
+     */
+    private boolean passesLegalityMasks(int srcRow, int srcCol, int destRow, int destCol) {
+        if (checkerCount > 1 || (checkMask & (1L << (destRow * 8 + destCol))) == 0) {
+            return false;
+        }
+        if ((pinnedMask & (1L << (srcRow * 8 + srcCol))) == 0) {
+            return true;
+        }
+        // A pinned piece may only move along the line through its king.
+        return (Rays.LINE[maskKingSquare][srcRow * 8 + srcCol] & (1L << (destRow * 8 + destCol))) != 0;
+    }
+
+    /**
+     * Finds the pieces pinned to the king of the given side, the pieces giving check,
+     * and the squares that capture or block a single checker.
+     */
+    private void computeLegalityMasks(boolean white) {
+        masksValid = true;
+        masksWhite = white;
+        maskKingSquare = -1;
+        checkerCount = 0;
+        pinnedMask = 0L;
+        checkMask = 0L;
+
+        for (int r = 0; r < 8 && maskKingSquare < 0; r++) {
+            for (int c = 0; c < 8; c++) {
+                Piece p = boardInternal[r][c];
+                if (p instanceof King && p.isWhite() == white) {
+                    maskKingSquare = r * 8 + c;
+                    break;
+                }
+            }
+        }
+        if (maskKingSquare < 0) {
+            return;
+        }
+        int kingRow = maskKingSquare / 8, kingCol = maskKingSquare % 8;
+
+        // Knight and pawn checkers.
+        for (int[] jump : KNIGHT_JUMPS) {
+            int r = kingRow + jump[0], c = kingCol + jump[1];
+            if (inBounds(r, c) && boardInternal[r][c] instanceof Knight && boardInternal[r][c].isWhite() != white) {
+                checkerCount++;
+                checkMask |= 1L << (r * 8 + c);
+            }
+        }
+        // Enemy pawns attack toward our side: a black pawn above a white king, and vice versa.
+        int pawnRow = white ? kingRow - 1 : kingRow + 1;
+        for (int dc = -1; dc <= 1; dc += 2) {
+            int c = kingCol + dc;
+            if (inBounds(pawnRow, c) && boardInternal[pawnRow][c] instanceof Pawn
+                    && boardInternal[pawnRow][c].isWhite() != white) {
+                checkerCount++;
+                checkMask |= 1L << (pawnRow * 8 + c);
+            }
+        }
+
+        // Sliding checkers and pins, one ray at a time.
+        for (int[] dir : Rays.DIRECTIONS) {
+            boolean diagonal = dir[0] != 0 && dir[1] != 0;
+            long ray = 0L;
+            int blocker = -1;
+            for (int r = kingRow + dir[0], c = kingCol + dir[1]; inBounds(r, c); r += dir[0], c += dir[1]) {
+                ray |= 1L << (r * 8 + c);
+                Piece p = boardInternal[r][c];
+                if (p == null) continue;
+                if (p.isWhite() == white) {
+                    if (blocker >= 0) break;   // two of our pieces: no pin on this ray
+                    blocker = r * 8 + c;
+                    continue;
+                }
+                boolean slides = p instanceof Queen || (diagonal ? p instanceof Bishop : p instanceof Rook);
+                if (slides) {
+                    if (blocker >= 0) {
+                        pinnedMask |= 1L << blocker;
+                    } else {
+                        checkerCount++;
+                        checkMask |= ray;
+                    }
+                }
+                break;
+            }
+        }
+
+        if (checkerCount == 0) {
+            checkMask = -1L;
+        }
+    }
+
+    private boolean simulateAndCheck(
+            Piece movingPiece, int srcRow, int srcCol,
+            int destRow, int destCol,
+            boolean isPromotion
+    ) {
+        long startTime = ChessMetrics.start();
+        Piece originalDest = boardInternal[destRow][destCol];
+
+        boolean isEnPassant = isEnPassant(movingPiece, srcRow, srcCol, destRow, destCol);
+        Piece originalCaptured = null;
+        int capturedRow = -1;
+        if (isEnPassant) {
+            capturedRow = movingPiece.isWhite() ? destRow + 1 : destRow - 1;
+            originalCaptured = boardInternal[capturedRow][destCol];
+            boardInternal[capturedRow][destCol] = null;
+        }
+
+        boardInternal[destRow][destCol] = movingPiece;
+        boardInternal[srcRow][srcCol] = null;
+
+        Piece tempPromoted = null;
+        if (isPromotion) {
+            tempPromoted = movingPiece.isWhite() ? Queen.WHITE : Queen.BLACK;
+            boardInternal[destRow][destCol] = tempPromoted;
+        }
+
+        boolean inCheck = isKingInCheck(movingPiece.isWhite());
+
+
+        boardInternal[srcRow][srcCol] = movingPiece;
+        boardInternal[destRow][destCol] = originalDest;
+        if (isEnPassant) {
+            boardInternal[capturedRow][destCol] = originalCaptured;
+        }
+
+        ChessMetrics.stop(ChessMetrics.Phase.SIMULATE_AND_CHECK, startTime);
+        return !inCheck;
+    }
+
+    private boolean isKingInCheck(boolean whiteKing) {
+        int kingRow = -1, kingCol = -1;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                Piece p = boardInternal[r][c];
+                if (p instanceof King && p.isWhite() == whiteKing) {
+                    kingRow = r;
+                    kingCol = c;
+                    break;
+                }
+            }
+            if (kingRow != -1) break;
+        }
+        if (kingRow == -1) return true;
+        return isSquareUnderAttack(kingRow, kingCol, !whiteKing);
+    }
+
+    private boolean isCheckmate(boolean whitePlayer) {
+        long startTime = ChessMetrics.start();
+        boolean checkmate = hasNoEscape(whitePlayer);
+        ChessMetrics.stop(ChessMetrics.Phase.IS_CHECKMATE, startTime);
+        return checkmate;
+    }
+
+    private boolean hasNoEscape(boolean whitePlayer) {
+        if (!isKingInCheck(whitePlayer)) {
+            return false;
+        }
+        boolean useMasks = prepareLegalityMasks(whitePlayer);
+        // Castling out of check is never legal, so the board-only isMoveValid, which
+        // never allows it, lists every possible escape.
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                Piece p = boardInternal[r][c];
+                if (p != null && p.isWhite() == whitePlayer) {
+                    boolean maskable = useMasks && !(p instanceof King);
+                    // In double check only the king can move.
+                    if (maskable && checkerCount > 1) continue;
+                    for (int dr = 0; dr < 8; dr++) {
+                        for (int dc = 0; dc < 8; dc++) {
+                            if (maskable) {
+                                if (p.isMoveValid(r, c, dr, dc, boardInternal)
+                                        && passesLegalityMasks(r, c, dr, dc)) {
+                                    return false;
+                                }
+                            } else if (p.isMoveValid(r, c, dr, dc, boardInternal)) {
+                                Piece origDest = boardInternal[dr][dc];
+
+                                boardInternal[dr][dc] = p;
+                                boardInternal[r][c] = null;
+
+                                boolean stillInCheck = isKingInCheck(whitePlayer);
+
+                                boardInternal[r][c] = p;
+                                boardInternal[dr][dc] = origDest;
+
+                                if (!stillInCheck) {
+                                    return false;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // Kings need this game's castling rights; every other piece only needs the board.
+    private boolean isMoveValid(Piece p, int fromRow, int fromCol, int toRow, int toCol) {
+        return p instanceof King
+                ? ((King) p).isMoveValid(fromRow, fromCol, toRow, toCol, boardInternal, castlingRights)
+                : p.isMoveValid(fromRow, fromCol, toRow, toCol, boardInternal);
+    }
+
+    private boolean isSquareUnderAttack(int row, int col, boolean attackerIsWhite) {
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                Piece p = boardInternal[r][c];
+                // A king attacks only the squares next to it, never its castling squares.
+                if (p != null && p.isWhite() == attackerIsWhite) {
+                    if (p.isMoveValid(r, c, row, col, boardInternal)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private ReturnPlay illegalMove(ChessMetrics.IllegalReason reason, boolean delta) {
+        ChessMetrics.illegal(reason);
+        ChessMetrics.allocated(ChessMetrics.Allocation.RETURN_PLAY, 1);
+        ReturnPlay ret = new ReturnPlay();
+        fillBoard(ret, 0L, delta);
+        ret.message = ReturnPlay.Message.ILLEGAL_MOVE;
+        return ret;
+    }
+
+    private static boolean inBounds(int r, int c) {
+        return (r >= 0 && r < 8 && c >= 0 && c < 8);
+    }
+
+    ArrayList<ReturnPiece> convertBoard() {
+        long startTime = ChessMetrics.start();
+        ArrayList<ReturnPiece> list = new ArrayList<>();
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                Piece p = boardInternal[r][c];
+                if (p != null) {
+                    list.add(returnPiece(p, r, c));
+                }
+            }
+        }
+        ChessMetrics.allocated(ChessMetrics.Allocation.RETURN_PIECE, list.size());
+        ChessMetrics.stop(ChessMetrics.Phase.CONVERT_BOARD, startTime);
+        return list;
+    }
+
+    // ReturnPiece type for each piece code.
+    private static final ReturnPiece.PieceType[] PIECE_TYPES = {
+            ReturnPiece.PieceType.WP, ReturnPiece.PieceType.WN, ReturnPiece.PieceType.WB,
+            ReturnPiece.PieceType.WR, ReturnPiece.PieceType.WQ, ReturnPiece.PieceType.WK,
+            ReturnPiece.PieceType.BP, ReturnPiece.PieceType.BN, ReturnPiece.PieceType.BB,
+            ReturnPiece.PieceType.BR, ReturnPiece.PieceType.BQ, ReturnPiece.PieceType.BK
+    };
+
+    // A square as a ReturnPiece; the piece type is null for an empty square.
+    private static ReturnPiece returnPiece(Piece p, int row, int col) {
+        ReturnPiece rp = new ReturnPiece();
+        rp.pieceType = p == null ? null : PIECE_TYPES[p.getCode()];
+        rp.pieceFile = ReturnPiece.PieceFile.values()[col];
+        rp.pieceRank = 8 - row;
+        return rp;
+    }
+
+    /**
+     * Lists the given squares of the current board, for delta results.
+     * @param squares Bits row * 8 + col of the squares to list.
+     */
+    private ArrayList<ReturnPiece> convertSquares(long squares) {
+        ArrayList<ReturnPiece> list = new ArrayList<>(Long.bitCount(squares));
+        for (long bits = squares; bits != 0; bits &= bits - 1) {
+            int sq = Long.numberOfTrailingZeros(bits);
+            list.add(returnPiece(boardInternal[sq / 8][sq % 8], sq / 8, sq % 8));
+        }
+        ChessMetrics.allocated(ChessMetrics.Allocation.RETURN_PIECE, list.size());
+        return list;
+    }
+
+    // Fills in the board part of a result: every piece, or for a delta only the changed squares.
+    private void fillBoard(ReturnPlay ret, long changed, boolean delta) {
+        ret.sequence = ply;
+        if (delta) {
+            ret.changedSquares = convertSquares(changed);
+        } else {
+            ret.piecesOnBoard = convertBoard();
+        }
+    }
+
+    /**
+     * Returns the full current board with its sequence number, for delta clients that lost track.
+     * @return A result with piecesOnBoard set and no message.
+     */
+    ReturnPlay resync() {
+        ChessMetrics.allocated(ChessMetrics.Allocation.RETURN_PLAY, 1);
+        ReturnPlay ret = new ReturnPlay();
+        ret.piecesOnBoard = convertBoard();
+        ret.sequence = ply;
+        return ret;
+    }
+}
@@ -0,0 +1,399 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Annotates a finished game: for every move it reports the evaluation, the best
+ * alternatives (multi-PV) and a blunder classification.
+ *
+ * Each position is searched with a fixed-depth alpha-beta negamax over Game.makeMove,
+ * followed by a short capture search so exchanges are not cut off half way (in check it
+ * searches every evasion instead, so a mate at the horizon is still seen), and limited
+ * by a node budget per position that is shared out among the root moves. Evaluation is
+ * material plus the cached pawn-structure score. Search results are kept in a
+ * transposition table keyed by position hash and reused from one position of the game
+ * to the next. Moves are tried on copies of the game, so the game being analysed is
+ * never changed.
+ *
+ * An analyzer keeps its own table and move buffers and is not thread-safe. To analyse
+ * many games at once, analyzeAll runs them on a thread pool with an analyzer per game.
+ */
+class GameAnalyzer {
+
+    static final int[] PIECE_VALUES = {100, 320, 330, 500, 900, 0};  // P, N, B, R, Q, K
+    static final int MATE_SCORE = 100000;
+    private static final int MAX_TABLE_SIZE = 1 << 20;
+    private static final int QUIESCENCE_DEPTH = 4;
+
+    /** How much worse than the best move the played move was. */
+    enum Classification { BEST, GOOD, INACCURACY, MISTAKE, BLUNDER }
+
+    /** A candidate move and its score for the side that plays it. */
+    static final class Line {
+        final String move;
+        final int score;
+
+        Line(String move, int score) {
+            this.move = move;
+            this.score = score;
+        }
+
+        public String toString() {
+            return move + "(" + score + ")";
+        }
+    }
+
+    /** Analysis of one move of the game. */
+    static final class PlyReport {
+        int ply;
+        String played;
+        int playedScore;
+        Classification classification;
+        List<Line> bestLines = new ArrayList<>();
+        long nodes;
+
+        public String toString() {
+            return ply + " " + played + " " + playedScore + " " + classification + " " + bestLines;
+        }
+    }
+
+    /** Analysis of a whole game. */
+    static final class Report {
+        final List<PlyReport> plies = new ArrayList<>();
+        long nodes;
+        long tableHits;
+        String stoppedAt;  // the move that could not be played, if any
+
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (PlyReport ply : plies) {
+                sb.append(ply).append('\n');
+            }
+            if (stoppedAt != null) {
+                sb.append("illegal move: ").append(stoppedAt).append('\n');
+            }
+            sb.append("nodes=").append(nodes).append(" tableHits=").append(tableHits).append('\n');
+            return sb.toString();
+        }
+    }
+
+    private final int depth;
+    private final int multiPv;
+    private final long nodeBudget;
+
+    // One packed move list per search ply, reused from node to node.
+    private final short[][] moveBuffers;
+
+    // Position key -> {depth searched, score for the side to move}.
+    private final HashMap<Long, int[]> table = new HashMap<>();
+    private long nodes;
+    private long tableHits;
+
+    /**
+     * @param depth      Search depth in plies for each candidate move, at least 1.
+     * @param multiPv    Number of best alternatives to report per move.
+     * @param nodeBudget Maximum nodes to search per position.
+     */
+    GameAnalyzer(int depth, int multiPv, long nodeBudget) {
+        this.depth = Math.max(1, depth);
+        this.multiPv = Math.max(1, multiPv);
+        this.nodeBudget = nodeBudget;
+        this.moveBuffers = new short[this.depth + QUIESCENCE_DEPTH + 1][Move.MAX_MOVES];
+    }
+
+    /**
+     * Usage: GameAnalyzer [-threads N] [depth]
+     * Reads one game per line from standard input, each a comma-separated list of
+     * moves in Chess.play notation, and prints a report per game in input order.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int depth = 2, threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                depth = Integer.parseInt(args[i]);
+            }
+        }
+        List<List<String>> games = new ArrayList<>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isBlank()) continue;
+            List<String> moves = new ArrayList<>();
+            for (String move : line.split(",")) {
+                moves.add(move.trim());
+            }
+            games.add(moves);
+        }
+        List<Report> reports = analyzeAll(games, depth, 3, 200_000, threads);
+        for (int i = 0; i < reports.size(); i++) {
+            System.out.print("game " + (i + 1) + "\n" + reports.get(i));
+        }
+    }
+
+    /**
+     * Analyses games in parallel on a pool of threads, each game from the standard start
+     * on its own analyzer. Games share nothing but the engine's thread-safe caches, so
+     * the reports are the same whatever the number of threads.
+     * @param games   The games, each a list of moves in Chess.play notation.
+     * @param threads Number of worker threads, at least 1.
+     * @return One report per game, in the order of the games.
+     */
+    static List<Report> analyzeAll(List<List<String>> games, int depth, int multiPv, long nodeBudget,
+                                   int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Report>> pending = new ArrayList<>(games.size());
+            for (List<String> moves : games) {
+                pending.add(pool.submit(() -> new GameAnalyzer(depth, multiPv, nodeBudget).analyze(null, moves)));
+            }
+            List<Report> reports = new ArrayList<>(games.size());
+            for (Future<Report> report : pending) {
+                reports.add(report.get());
+            }
+            return reports;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Analysis failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Analyses a game, replaying it on a new Game.
+     * @param fen   Starting position, or null for the standard start.
+     * @param moves The moves of the game in Chess.play notation.
+     * @return The report; it ends early at the first illegal move.
+     */
+    Report analyze(String fen, List<String> moves) {
+        Report report = new Report();
+        long startNodes = nodes, startHits = tableHits;
+        Game current = new Game();
+        if (fen != null) current.loadFen(fen);
+
+        short[] legal = moveBuffers[0];
+        for (int i = 0; i < moves.size(); i++) {
+            int n = current.generateMoves(legal);
+            short played = normalize(moves.get(i), legal, n);
+            if (played == Move.NONE) {
+                report.stoppedAt = moves.get(i);
+                break;
+            }
+
+            PlyReport ply = new PlyReport();
+            ply.ply = i + 1;
+            ply.played = Move.toString(played);
+            long positionStart = nodes;
+            long positionLimit = nodes + nodeBudget;
+
+            List<Line> lines = new ArrayList<>();
+            for (int j = 0; j < n; j++) {
+                short move = legal[j];
+                long limit = rootLimit(positionLimit, n - j);
+                // Full window for every root move so each alternative gets an exact score.
+                int score = -negamax(after(current, move), depth - 1, -MATE_SCORE, MATE_SCORE, limit, 1);
+                lines.add(new Line(Move.toString(move), score));
+                if (move == played) {
+                    ply.playedScore = score;
+                }
+            }
+            lines.sort((a, b) -> Integer.compare(b.score, a.score));
+            ply.bestLines.addAll(lines.subList(0, Math.min(multiPv, lines.size())));
+            ply.classification = classify(lines.get(0).score - ply.playedScore,
+                    lines.get(0).move.equals(ply.played));
+            ply.nodes = nodes - positionStart;
+            report.plies.add(ply);
+
+            current = after(current, played);
+            if (table.size() > MAX_TABLE_SIZE) {
+                table.clear();
+            }
+        }
+        report.nodes = nodes - startNodes;
+        report.tableHits = tableHits - startHits;
+        return report;
+    }
+
+    /**
+     * Picks the best move of a game's current position at this analyzer's depth. The
+     * game is left as it was.
+     * @param game The game to move in.
+     * @return The packed move, or Move.NONE if there are no legal moves.
+     */
+    short bestMove(Game game) {
+        long positionLimit = nodes + nodeBudget;
+        short best = Move.NONE;
+        int bestScore = -MATE_SCORE - 1;
+        short[] legal = moveBuffers[0];
+        int n = game.generateMoves(legal);
+        for (int i = 0; i < n; i++) {
+            short move = legal[i];
+            long limit = rootLimit(positionLimit, n - i);
+            // Only moves that beat the best so far need an exact score.
+            int beta = -Math.max(bestScore, -MATE_SCORE);
+            int score = -negamax(after(game, move), depth - 1, -MATE_SCORE, beta, limit, 1);
+            if (score > bestScore) {
+                bestScore = score;
+                best = move;
+            }
+        }
+        if (table.size() > MAX_TABLE_SIZE) {
+            table.clear();
+        }
+        return best;
+    }
+
+    /**
+     * Node limit for the next root move: an equal share of what is left of the position's
+     * budget, so moves late in the list are searched as deeply as early ones instead of
+     * getting only a static evaluation. Whatever a move leaves unused goes to the rest.
+     * @param positionLimit The node count at which the position's budget is spent.
+     * @param remaining     Root moves still to search, including this one.
+     */
+    private long rootLimit(long positionLimit, int remaining) {
+        return nodes + (positionLimit - nodes) / remaining;
+    }
+
+    static Classification classify(int loss, boolean isBest) {
+        if (isBest || loss <= 0) return Classification.BEST;
+        if (loss < 50) return Classification.GOOD;
+        if (loss < 100) return Classification.INACCURACY;
+        if (loss < 300) return Classification.MISTAKE;
+        return Classification.BLUNDER;
+    }
+
+    /**
+     * Matches a move as written in the game to a legal move in legalMoves form:
+     * a trailing "draw?" is dropped and a promotion without a piece means a queen.
+     * @return The matching legal move, or Move.NONE if it is illegal.
+     */
+    private static short normalize(String move, short[] legal, int count) {
+        String[] tokens = move.trim().split("\\s+");
+        int n = tokens.length;
+        if (n > 0 && tokens[n - 1].equals("draw?")) n--;
+        if (n < 2) return Move.NONE;
+        String base = tokens[0] + " " + tokens[1];
+        String candidate = n > 2 ? base + " " + Character.toUpperCase(tokens[2].charAt(0)) : base;
+        for (int i = 0; i < count; i++) {
+            String text = Move.toString(legal[i]);
+            if (text.equals(candidate) || (n == 2 && text.equals(base + " Q"))) return legal[i];
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Makes a move on a copy of the given game, through Game.makeMove rather than play,
+     * so no result, mate scan or snapshot is built for positions the search only visits.
+     * @return The game after the move.
+     */
+    private static Game after(Game game, short move) {
+        Game next = game.copy();
+        next.makeMove(move);
+        return next;
+    }
+
+    /**
+     * Scores a position for the side to move, searching depth more plies with
+     * alpha-beta pruning. Only exact scores go into the table, and only while the node
+     * budget lasts: once it runs out, nodes below fall back to quiescence, so a score
+     * is no longer a full-depth score.
+     */
+    private int negamax(Game game, int depth, int alpha, int beta, long limit, int ply) {
+        nodes++;
+        long key = game.positionKey();
+        int[] entry = table.get(key);
+        if (entry != null && entry[0] >= depth) {
+            tableHits++;
+            return entry[1];
+        }
+        if (depth == 0 || nodes >= limit) {
+            return quiesce(game, QUIESCENCE_DEPTH, alpha, beta, limit, ply);
+        }
+
+        short[] legal = moveBuffers[ply];
+        int n = game.generateMoves(legal);
+        if (n == 0) {
+            int score = game.isInCheck() ? -MATE_SCORE : 0;
+            table.put(key, new int[] { Integer.MAX_VALUE, score });
+            return score;
+        }
+        int originalAlpha = alpha;
+        int best = -MATE_SCORE;
+        for (int i = 0; i < n; i++) {
+            best = Math.max(best, -negamax(after(game, legal[i]), depth - 1, -beta, -alpha, limit, ply + 1));
+            alpha = Math.max(alpha, best);
+            if (alpha >= beta) break;
+        }
+        if (best > originalAlpha && best < beta && nodes < limit) {
+            table.put(key, new int[] { depth, best });
+        }
+        return best;
+    }
+
+    /**
+     * Scores a position by standing pat on the static evaluation or playing captures,
+     * whichever is better for the side to move. In check there is no standing pat:
+     * every evasion is searched, and having none is mate.
+     */
+    private int quiesce(Game game, int depth, int alpha, int beta, long limit, int ply) {
+        short[] moves = moveBuffers[ply];
+        if (game.isInCheck()) {
+            int n = game.generateMoves(moves);
+            if (n == 0) {
+                return -MATE_SCORE;
+            }
+            if (depth == 0 || nodes >= limit) {
+                return evaluate(game);
+            }
+            int best = -MATE_SCORE;
+            for (int i = 0; i < n; i++) {
+                nodes++;
+                best = Math.max(best, -quiesce(after(game, moves[i]), depth - 1, -beta, -alpha, limit, ply + 1));
+                alpha = Math.max(alpha, best);
+                if (alpha >= beta) break;
+            }
+            return best;
+        }
+        int best = evaluate(game);
+        if (best >= beta || depth == 0 || nodes >= limit) {
+            return best;
+        }
+        alpha = Math.max(alpha, best);
+        int n = game.generateCaptures(moves);
+        for (int i = 0; i < n; i++) {
+            nodes++;
+            best = Math.max(best, -quiesce(after(game, moves[i]), depth - 1, -beta, -alpha, limit, ply + 1));
+            alpha = Math.max(alpha, best);
+            if (alpha >= beta) break;
+        }
+        return best;
+    }
+
+    /**
+     * Static evaluation of a game's current position for the side to move:
+     * material plus pawn structure, in centipawns.
+     */
+    private static int evaluate(Game game) {
+        int score = game.pawnStructureScore();
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                Piece p = game.pieceAt(r, c);
+                if (p != null) {
+                    int value = PIECE_VALUES[Zobrist.pieceIndex(p) % 6];
+                    score += p.isWhite() ? value : -value;
+                }
+            }
+        }
+        return game.isWhiteToMove() ? score : -score;
+    }
+}
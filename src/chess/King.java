@@ -2,34 +2,55 @@ package chess;
 
 public class King extends Piece {
 
+    /** The shared white king. */
+    public static final King WHITE = new King(true);
+    /** The shared black king. */
+    public static final King BLACK = new King(false);
+
     /**
-     * Constructs a King at the specified board location.
-     * @param row     Row index (0-7); row 0 is rank 8.
-     * @param col     Column index (0-7); col 0 is file 'a'.
-     * @param isWhite True if the king is white; false if black.
+     * Constructs the king of one colour; use WHITE or BLACK.
+     * @param isWhite True if the king is white, false if black.
      */
-    public King(int row, int col, boolean isWhite) {
-        super(row, col, isWhite);
+    private King(boolean isWhite) {
+        super(isWhite, KING);
     }
 
     /**
-     * Validates a move for the king.
-     * It allows:
-     *  - Normal moves: one square in any direction.
-     *  - Castling: a horizontal move of two squares on the same row, with proper conditions.
+     * Validates a move for the king: one square in any direction. Castling depends on the
+     * game's castling rights, which a board alone does not hold, so this never allows it;
+     * use the overload that takes the rights. One-square moves are also exactly the
+     * squares a king attacks.
      *
      * Note: This method does not check for moves that put the king in check;
      * that validation is assumed to be handled elsewhere.
      *
-     * @param toRow Destination row index (0-7).
-     * @param toCol Destination column index (0-7).
-     * @param board The current board represented as a 2D array of Piece objects.
+     * @param fromRow Source row index (0-7).
+     * @param fromCol Source column index (0-7).
+     * @param toRow   Destination row index (0-7).
+     * @param toCol   Destination column index (0-7).
+     * @param board   The current board represented as a 2D array of Piece objects.
      * @return True if the move is valid, false otherwise.
      */
     @Override
-    public boolean isMoveValid(int toRow, int toCol, Piece[][] board) {
-        int rowDiff = Math.abs(this.row - toRow);
-        int colDiff = Math.abs(this.col - toCol);
+    public boolean isMoveValid(int fromRow, int fromCol, int toRow, int toCol, Piece[][] board) {
+        return isMoveValid(fromRow, fromCol, toRow, toCol, board, 0);
+    }
+
+    /**
+     * Validates a move for the king in a game with the given castling rights.
+     * It allows:
+     *  - Normal moves: one square in any direction.
+     *  - Castling: a horizontal move of two squares on the same row, from the king's home
+     *    square, while the rights still hold that side's castling right.
+     *
+     * @param castlingRights The game's rights, a combination of Chess.WHITE_KINGSIDE,
+     *                       Chess.WHITE_QUEENSIDE, Chess.BLACK_KINGSIDE and Chess.BLACK_QUEENSIDE.
+     * @return True if the move is valid, false otherwise.
+     * @see #isMoveValid(int, int, int, int, Piece[][])
+     */
+    boolean isMoveValid(int fromRow, int fromCol, int toRow, int toCol, Piece[][] board, int castlingRights) {
+        int rowDiff = Math.abs(fromRow - toRow);
+        int colDiff = Math.abs(fromCol - toCol);
 
         // Normal king move: move one square in any direction.
         if (rowDiff <= 1 && colDiff <= 1) {
@@ -42,22 +63,25 @@ public class King extends Piece {
 
         // Castling: king moves two squares horizontally on the same row.
         if (rowDiff == 0 && colDiff == 2) {
-            // King must not have moved.
-            if (this.hasMoved) {
+            // King must be on its home square.
+            if (fromCol != 4 || fromRow != (isWhite ? 7 : 0)) {
                 return false;
             }
 
             // Determine direction: kingside (toCol > current col) or queenside.
-            if (toCol > this.col) {
+            if (toCol > fromCol) {
+                if ((castlingRights & (isWhite ? Chess.WHITE_KINGSIDE : Chess.BLACK_KINGSIDE)) == 0) {
+                    return false;
+                }
                 // Kingside castling:
                 // Rook should be at the right-most square (column 7) on the same row.
-                Piece rook = board[this.row][7];
-                if (rook == null || !(rook instanceof Rook) || rook.hasMoved()) {
+                Piece rook = board[fromRow][7];
+                if (!(rook instanceof Rook) || rook.isWhite() != this.isWhite) {
                     return false;
                 }
                 // Squares between king and rook must be empty.
-                for (int c = this.col + 1; c < 7; c++) {
-                    if (board[this.row][c] != null) {
+                for (int c = fromCol + 1; c < 7; c++) {
+                    if (board[fromRow][c] != null) {
                         return false;
                     }
                 }
@@ -65,14 +89,17 @@ public class King extends Piece {
                 return true;
             } else {
                 // Queenside castling:
+                if ((castlingRights & (isWhite ? Chess.WHITE_QUEENSIDE : Chess.BLACK_QUEENSIDE)) == 0) {
+                    return false;
+                }
                 // Rook should be at the left-most square (column 0) on the same row.
-                Piece rook = board[this.row][0];
-                if (rook == null || !(rook instanceof Rook) || rook.hasMoved()) {
+                Piece rook = board[fromRow][0];
+                if (!(rook instanceof Rook) || rook.isWhite() != this.isWhite) {
                     return false;
                 }
                 // Squares between king and rook must be empty.
-                for (int c = 1; c < this.col; c++) {
-                    if (board[this.row][c] != null) {
+                for (int c = 1; c < fromCol; c++) {
+                    if (board[fromRow][c] != null) {
                         return false;
                     }
                 }
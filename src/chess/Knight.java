@@ -2,14 +2,17 @@ package chess;
 
 public class Knight extends Piece {
 
+    /** The shared white knight. */
+    public static final Knight WHITE = new Knight(true);
+    /** The shared black knight. */
+    public static final Knight BLACK = new Knight(false);
+
     /**
-     * Constructs a Knight at the specified board location.
-     * @param row Row index (0-7).
-     * @param col Column index (0-7), where 0 corresponds to file 'a'.
+     * Constructs the knight of one colour; use WHITE or BLACK.
      * @param isWhite True if the knight is white, false if black.
      */
-    public Knight(int row, int col, boolean isWhite) {
-        super(row, col, isWhite);
+    private Knight(boolean isWhite) {
+        super(isWhite, KNIGHT);
     }
 
     /**
@@ -17,15 +20,17 @@ public class Knight extends Piece {
      * The knight moves in an L-shape: two squares in one direction and one square in the perpendicular direction.
      * It can jump over other pieces.
      *
-     * @param toRow Destination row index (0-7).
-     * @param toCol Destination column index (0-7).
-     * @param board The current board represented as a 2D array of Piece objects.
+     * @param fromRow Source row index (0-7).
+     * @param fromCol Source column index (0-7).
+     * @param toRow   Destination row index (0-7).
+     * @param toCol   Destination column index (0-7).
+     * @param board   The current board represented as a 2D array of Piece objects.
      * @return True if the knight's move is valid; false otherwise.
      */
     @Override
-    public boolean isMoveValid(int toRow, int toCol, Piece[][] board) {
-        int rowDiff = Math.abs(this.row - toRow);
-        int colDiff = Math.abs(this.col - toCol);
+    public boolean isMoveValid(int fromRow, int fromCol, int toRow, int toCol, Piece[][] board) {
+        int rowDiff = Math.abs(fromRow - toRow);
+        int colDiff = Math.abs(fromCol - toCol);
 
         // Knight moves: 2 squares in one direction and 1 square in the perpendicular direction.
         if ((rowDiff == 2 && colDiff == 1) || (rowDiff == 1 && colDiff == 2)) {
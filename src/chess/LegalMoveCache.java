@@ -0,0 +1,125 @@
+package chess;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache from position key to the legal moves of that position, so repeated
+ * "is this legal?" and "what can I play?" queries on one position skip validation.
+ *
+ * The table has a fixed number of slots indexed by the low bits of the key; a new
+ * entry replaces whatever held its slot, which bounds the size without any LRU
+ * bookkeeping. Entries are immutable and slots are swapped atomically, so the cache
+ * may be read and filled from several threads. Moves are stored packed (see Move),
+ * ordered by source and then destination square.
+ */
+class LegalMoveCache {
+
+    /** One cached position. */
+    private static final class Entry {
+        final long key;
+        final short[] moves;
+
+        Entry(long key, short[] moves) {
+            this.key = key;
+            this.moves = moves;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache with a fixed number of entries.
+     * @param size Number of entries; rounded up to a power of two.
+     */
+    LegalMoveCache(int size) {
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        slots = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the cached legal moves of a position.
+     * @param key The position key (see Chess.positionKey).
+     * @return The moves, or null if the position is not cached. Do not modify.
+     */
+    short[] get(long key) {
+        Entry entry = slots.get((int) key & mask);
+        if (entry != null && entry.key == key) {
+            hits.increment();
+            return entry.moves;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches the legal moves of a position, evicting the entry that held its slot.
+     * @param key   The position key.
+     * @param moves The moves, ordered by source and destination square; the array must
+     *              not be modified afterwards.
+     */
+    void put(long key, short[] moves) {
+        slots.set((int) key & mask, new Entry(key, moves));
+    }
+
+    /**
+     * Returns whether a cached move list has a move between two squares.
+     * @param moves A list returned by get.
+     * @param from  Source square (row * 8 + col).
+     * @param to    Destination square (row * 8 + col).
+     * @return True if the move is legal (with some promotion piece, for a promotion).
+     */
+    static boolean contains(short[] moves, int from, int to) {
+        return indexOf(moves, from * 64 + to) >= 0;
+    }
+
+    /**
+     * Returns whether a cached move list contains a packed move, flags included.
+     * @param moves A list returned by get.
+     * @param move  The packed move.
+     * @return True if the move is legal.
+     */
+    static boolean contains(short[] moves, short move) {
+        int squares = Move.squares(move);
+        for (int i = indexOf(moves, squares); i >= 0 && i < moves.length && Move.squares(moves[i]) == squares; i++) {
+            if (moves[i] == move) return true;
+        }
+        return false;
+    }
+
+    /** Binary search for the first move between the given squares (from * 64 + to), or -1. */
+    private static int indexOf(short[] moves, int squares) {
+        int lo = 0, hi = moves.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Move.squares(moves[mid]) < squares) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo < moves.length && Move.squares(moves[lo]) == squares ? lo : -1;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    double getHitRate() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+        hits.reset();
+        misses.reset();
+    }
+}
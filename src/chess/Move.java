@@ -0,0 +1,122 @@
+package chess;
+
+/**
+ * Moves packed into 16 bits, so move lists, history and caches are plain short arrays
+ * with no per-move objects. Squares are numbered row * 8 + col, with row 0 being rank 8.
+ * <pre>
+ *   bits 15-10  from square
+ *   bits  9-4   to square
+ *   bits  3-0   flags
+ * </pre>
+ * The flags follow the usual layout: 0 quiet, 1 double pawn push, 2 and 3 king- and
+ * queen-side castling, 4 capture, 5 en passant, and 8-11 promotion to knight, bishop,
+ * rook or queen, plus 4 when the promotion also captures. Moves of one piece sort
+ * together, since the source square is in the high bits.
+ */
+final class Move {
+    static final int QUIET = 0;
+    static final int DOUBLE_PUSH = 1;
+    static final int KING_CASTLE = 2;
+    static final int QUEEN_CASTLE = 3;
+    static final int CAPTURE = 4;
+    static final int EN_PASSANT = 5;
+    static final int PROMOTION = 8;
+
+    /** Not a move (a8 to a8); used where there is no move to return. */
+    static final short NONE = 0;
+
+    /** Enough room for the legal moves of any position (at most 218). */
+    static final int MAX_MOVES = 256;
+
+    private static final String PROMOTION_LETTERS = "NBRQ";
+
+    private Move() {
+    }
+
+    /**
+     * Packs a move.
+     * @param from  Source square (row * 8 + col).
+     * @param to    Destination square.
+     * @param flags One of the flag values above.
+     * @return The packed move.
+     */
+    static short of(int from, int to, int flags) {
+        return (short) (from << 10 | to << 4 | flags);
+    }
+
+    /**
+     * Returns the flags for a promotion.
+     * @param pieceType Piece.KNIGHT, BISHOP, ROOK or QUEEN.
+     * @param capture   True if the promotion captures.
+     * @return The flags.
+     */
+    static int promotionFlags(int pieceType, boolean capture) {
+        return PROMOTION | (pieceType - Piece.KNIGHT) | (capture ? CAPTURE : 0);
+    }
+
+    static int from(short move) {
+        return (move >>> 10) & 63;
+    }
+
+    static int to(short move) {
+        return (move >>> 4) & 63;
+    }
+
+    static int flags(short move) {
+        return move & 15;
+    }
+
+    /**
+     * Returns the source and destination squares only, from * 64 + to; moves that
+     * differ only in promotion piece share it.
+     */
+    static int squares(short move) {
+        return (move & 0xFFFF) >>> 4;
+    }
+
+    static boolean isPromotion(short move) {
+        return (move & PROMOTION) != 0;
+    }
+
+    /** True for captures, including en passant and capturing promotions. */
+    static boolean isCapture(short move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    static boolean isCastle(short move) {
+        int flags = flags(move);
+        return flags == KING_CASTLE || flags == QUEEN_CASTLE;
+    }
+
+    /**
+     * @return The piece type promoted to (Piece.KNIGHT to Piece.QUEEN); only meaningful
+     *         for promotions.
+     */
+    static int promotionType(short move) {
+        return Piece.KNIGHT + (move & 3);
+    }
+
+    /**
+     * Formats a move in the notation Chess.play accepts, e.g. "e2 e4" or "e7 e8 Q".
+     * @param move The packed move.
+     * @return The move text.
+     */
+    static String toString(short move) {
+        String text = squareName(from(move)) + " " + squareName(to(move));
+        return isPromotion(move) ? text + " " + PROMOTION_LETTERS.charAt(move & 3) : text;
+    }
+
+    /**
+     * Formats a move in UCI long algebraic form, e.g. "e2e4" or "e7e8q".
+     * @param move The packed move.
+     * @return The UCI move.
+     */
+    static String toUci(short move) {
+        String uci = squareName(from(move)) + squareName(to(move));
+        return isPromotion(move) ? uci + Character.toLowerCase(PROMOTION_LETTERS.charAt(move & 3)) : uci;
+    }
+
+    static String squareName(int square) {
+        return "" + (char) ('a' + square % 8) + (8 - square / 8);
+    }
+}
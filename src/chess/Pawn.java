@@ -2,15 +2,17 @@ package chess;
 
 public class Pawn extends Piece {
 
+    /** The shared white pawn. */
+    public static final Pawn WHITE = new Pawn(true);
+    /** The shared black pawn. */
+    public static final Pawn BLACK = new Pawn(false);
+
     /**
-     * Constructs a Pawn at the specified board location.
-     * @param row Row index (0-7). For white pawns, row 6 is the starting row (rank 2);
-     *            for black pawns, row 1 is the starting row (rank 7).
-     * @param col Column index (0-7), where 0 corresponds to file 'a'.
+     * Constructs the pawn of one colour; use WHITE or BLACK.
      * @param isWhite True if the pawn is white, false if black.
      */
-    public Pawn(int row, int col, boolean isWhite) {
-        super(row, col, isWhite);
+    private Pawn(boolean isWhite) {
+        super(isWhite, PAWN);
     }
 
     /**
@@ -22,18 +24,20 @@ public class Pawn extends Piece {
      * </ul>
      * Note: En passant and promotion are not handled here.
      *
-     * @param toRow Destination row index (0-7).
-     * @param toCol Destination column index (0-7).
-     * @param board The current board represented as a 2D array of Piece objects.
+     * @param fromRow Source row index (0-7).
+     * @param fromCol Source column index (0-7).
+     * @param toRow   Destination row index (0-7).
+     * @param toCol   Destination column index (0-7).
+     * @param board   The current board represented as a 2D array of Piece objects.
      * @return True if the pawn's move is valid; false otherwise.
      */
     @Override
-    public boolean isMoveValid(int toRow, int toCol, Piece[][] board) {
+    public boolean isMoveValid(int fromRow, int fromCol, int toRow, int toCol, Piece[][] board) {
         int direction = isWhite ? -1 : 1; // White moves upward (row decreases), black moves downward (row increases)
         int startRow = isWhite ? 6 : 1;     // Starting row: white pawn row 6, black pawn row 1
 
-        int rowDiff = toRow - this.row;
-        int colDiff = Math.abs(toCol - this.col);
+        int rowDiff = toRow - fromRow;
+        int colDiff = Math.abs(toCol - fromCol);
 
         // Standard one-square forward move (no capture)
         if (colDiff == 0 && rowDiff == direction) {
@@ -43,8 +47,8 @@ public class Pawn extends Piece {
         }
 
         // Two-square forward move from starting position
-        if (colDiff == 0 && rowDiff == 2 * direction && this.row == startRow) {
-            int intermediateRow = this.row + direction;
+        if (colDiff == 0 && rowDiff == 2 * direction && fromRow == startRow) {
+            int intermediateRow = fromRow + direction;
             if (board[intermediateRow][toCol] == null && board[toRow][toCol] == null) {
                 return true;
             }
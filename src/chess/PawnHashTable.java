@@ -0,0 +1,148 @@
+package chess;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size cache from pawn key to pawn-structure score, shared by every game.
+ *
+ * Games on several threads probe and fill it without locking. Each entry is two plain
+ * longs, the key XORed with the score and the score itself, so a reader that sees one
+ * word of an entry from one writer and the other from another gets a key that does not
+ * match and evaluates the structure again; a racing write can cost a recomputation but
+ * never a wrong score. An empty entry reads as key 0 with score 0, which is also the
+ * correct entry for a board with no pawns.
+ */
+class PawnHashTable {
+    // Centipawn weights for the pawn-structure terms.
+    static final int DOUBLED_PENALTY = 15;
+    static final int ISOLATED_PENALTY = 12;
+    static final int PASSED_BONUS = 20;
+    static final int PASSED_RANK_BONUS = 10;
+
+    // Entry i is entries[2 * i] (key ^ score) and entries[2 * i + 1] (score).
+    private final long[] entries;
+    private final int mask;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Creates a pawn hash table with a fixed number of entries.
+     * @param size Number of entries; rounded up to a power of two.
+     */
+    PawnHashTable(int size) {
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        entries = new long[2 * capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the pawn-structure score for the board, using the cached value when
+     * the pawn key has been seen before. Positive scores favour white.
+     *
+     * @param pawnKey The pawn key of the board (see Zobrist.computePawnKey).
+     * @param board   The board, used only on a miss.
+     * @return The pawn-structure score in centipawns.
+     */
+    int probe(long pawnKey, Piece[][] board) {
+        probes.increment();
+        int index = 2 * ((int) pawnKey & mask);
+        long check = entries[index];
+        long stored = entries[index + 1];
+        if ((check ^ stored) == pawnKey) {
+            hits.increment();
+            return (int) stored;
+        }
+        int score = evaluate(board);
+        entries[index] = pawnKey ^ score;
+        entries[index + 1] = score;
+        return score;
+    }
+
+    long getProbes() {
+        return probes.sum();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    double getHitRate() {
+        long n = probes.sum();
+        return n == 0 ? 0.0 : (double) hits.sum() / n;
+    }
+
+    void clear() {
+        Arrays.fill(entries, 0);
+        probes.reset();
+        hits.reset();
+    }
+
+    /**
+     * Scores passed, isolated and doubled pawns for both sides.
+     * @param board The board.
+     * @return White's score minus black's score, in centipawns.
+     */
+    static int evaluate(Piece[][] board) {
+        // Per file: pawn count, and the most advanced / least advanced pawn rows.
+        int[] whiteCount = new int[8], blackCount = new int[8];
+        int[] whiteMinRow = new int[8], blackMaxRow = new int[8];
+        int[] whiteMaxRow = new int[8], blackMinRow = new int[8];
+        for (int c = 0; c < 8; c++) {
+            whiteMinRow[c] = 8;
+            whiteMaxRow[c] = -1;
+            blackMinRow[c] = 8;
+            blackMaxRow[c] = -1;
+        }
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                Piece p = board[r][c];
+                if (!(p instanceof Pawn)) continue;
+                if (p.isWhite()) {
+                    whiteCount[c]++;
+                    whiteMinRow[c] = Math.min(whiteMinRow[c], r);
+                    whiteMaxRow[c] = Math.max(whiteMaxRow[c], r);
+                } else {
+                    blackCount[c]++;
+                    blackMinRow[c] = Math.min(blackMinRow[c], r);
+                    blackMaxRow[c] = Math.max(blackMaxRow[c], r);
+                }
+            }
+        }
+
+        int score = 0;
+        for (int c = 0; c < 8; c++) {
+            boolean whiteNeighbour = (c > 0 && whiteCount[c - 1] > 0) || (c < 7 && whiteCount[c + 1] > 0);
+            boolean blackNeighbour = (c > 0 && blackCount[c - 1] > 0) || (c < 7 && blackCount[c + 1] > 0);
+
+            if (whiteCount[c] > 1) score -= DOUBLED_PENALTY * (whiteCount[c] - 1);
+            if (blackCount[c] > 1) score += DOUBLED_PENALTY * (blackCount[c] - 1);
+            if (whiteCount[c] > 0 && !whiteNeighbour) score -= ISOLATED_PENALTY * whiteCount[c];
+            if (blackCount[c] > 0 && !blackNeighbour) score += ISOLATED_PENALTY * blackCount[c];
+
+            // White pawn is passed if no black pawn on this or an adjacent file stands in front of it.
+            if (whiteCount[c] > 0) {
+                int row = whiteMinRow[c];
+                boolean passed = true;
+                for (int f = Math.max(0, c - 1); f <= Math.min(7, c + 1); f++) {
+                    if (blackCount[f] > 0 && blackMinRow[f] < row) {
+                        passed = false;
+                    }
+                }
+                if (passed) score += PASSED_BONUS + PASSED_RANK_BONUS * (6 - row);
+            }
+            if (blackCount[c] > 0) {
+                int row = blackMaxRow[c];
+                boolean passed = true;
+                for (int f = Math.max(0, c - 1); f <= Math.min(7, c + 1); f++) {
+                    if (whiteCount[f] > 0 && whiteMaxRow[f] > row) {
+                        passed = false;
+                    }
+                }
+                if (passed) score -= PASSED_BONUS + PASSED_RANK_BONUS * (row - 1);
+            }
+        }
+        return score;
+    }
+}
@@ -1,41 +1,50 @@
 package chess;
 
+/**
+ * A kind of chess piece: its type and colour. Pieces are flyweights with one shared
+ * instance per type and colour (for example Pawn.WHITE), so a position lives only in
+ * the board array and copying a board never allocates pieces.
+ *
+ * Row indices run from 0 (top, rank 8) to 7 (bottom, rank 1); column indices from
+ * 0 (file 'a') to 7 (file 'h').
+ */
 public abstract class Piece {
-    // Row indices: 0 (top, rank 8) to 7 (bottom, rank 1)
-    // Column indices: 0 corresponds to file 'a', 7 to file 'h'
-    protected int row;
-    protected int col;
-    protected boolean isWhite;
-    protected boolean hasMoved;
+    // Type codes; a piece's code is its type plus 6 for black (0-5 white, 6-11 black).
+    static final int PAWN = 0;
+    static final int KNIGHT = 1;
+    static final int BISHOP = 2;
+    static final int ROOK = 3;
+    static final int QUEEN = 4;
+    static final int KING = 5;
+
+    protected final boolean isWhite;
+    protected final int code;
 
     /**
-     * Constructor for a chess piece.
-     * @param row     Row index (0-7), where 0 is rank 8.
-     * @param col     Column index (0-7), where 0 is file 'a'.
+     * Constructor for a chess piece kind.
      * @param isWhite True if the piece is white, false if black.
+     * @param type    One of PAWN, KNIGHT, BISHOP, ROOK, QUEEN or KING.
      */
-    public Piece(int row, int col, boolean isWhite) {
-        this.row = row;
-        this.col = col;
+    protected Piece(boolean isWhite, int type) {
         this.isWhite = isWhite;
-        this.hasMoved = false;
+        this.code = isWhite ? type : type + 6;
     }
 
     /**
-     * Gets the file (letter a-h) for this piece based on its column.
-     * @return File letter.
+     * Returns the shared piece for a code.
+     * @param code Piece code 0-11 (see getCode).
+     * @return The piece.
      */
-    public char getFile() {
-        return (char) ('a' + col);
-    }
-
-    /**
-     * Gets the rank (number 1-8) for this piece based on its row.
-     * Row 0 corresponds to rank 8, row 7 to rank 1.
-     * @return Rank number.
-     */
-    public int getRank() {
-        return 8 - row;
+    static Piece fromCode(int code) {
+        boolean white = code < 6;
+        switch (code % 6) {
+            case PAWN: return white ? Pawn.WHITE : Pawn.BLACK;
+            case KNIGHT: return white ? Knight.WHITE : Knight.BLACK;
+            case BISHOP: return white ? Bishop.WHITE : Bishop.BLACK;
+            case ROOK: return white ? Rook.WHITE : Rook.BLACK;
+            case QUEEN: return white ? Queen.WHITE : Queen.BLACK;
+            default: return white ? King.WHITE : King.BLACK;
+        }
     }
 
     /**
@@ -47,42 +56,26 @@ public abstract class Piece {
     }
 
     /**
-     * Returns whether this piece has moved before.
-     * @return True if it has moved, false otherwise.
+     * Returns the compact code of this piece: 0-5 for white pawn, knight, bishop, rook,
+     * queen and king, and 6-11 for the same black pieces.
+     * @return The piece code.
      */
-    public boolean hasMoved() {
-        return hasMoved;
+    public int getCode() {
+        return code;
     }
 
     /**
-     * Sets the flag indicating whether this piece has moved.
-     * @param moved True if the piece has moved.
-     */
-    public void setHasMoved(boolean moved) {
-        this.hasMoved = moved;
-    }
-
-    /**
-     * Checks if moving this piece to the destination (toRow, toCol) is valid,
+     * Checks if moving this piece from (fromRow, fromCol) to (toRow, toCol) is valid,
      * given the current board state.
      *
-     * @param toRow Destination row index (0-7).
-     * @param toCol Destination column index (0-7).
-     * @param board The current board represented as a 2D array of Piece objects.
+     * @param fromRow Source row index (0-7).
+     * @param fromCol Source column index (0-7).
+     * @param toRow   Destination row index (0-7).
+     * @param toCol   Destination column index (0-7).
+     * @param board   The current board represented as a 2D array of Piece objects.
      * @return True if the move is valid; false otherwise.
      */
-    public abstract boolean isMoveValid(int toRow, int toCol, Piece[][] board);
-
-    /**
-     * Moves the piece to the destination coordinates and marks it as having moved.
-     * @param toRow Destination row index (0-7).
-     * @param toCol Destination column index (0-7).
-     */
-    public void move(int toRow, int toCol) {
-        this.row = toRow;
-        this.col = toCol;
-        this.hasMoved = true;
-    }
+    public abstract boolean isMoveValid(int fromRow, int fromCol, int toRow, int toCol, Piece[][] board);
 
     /**
      * Returns a string code representing this piece (e.g., "WP" for a white pawn,
@@ -92,4 +85,4 @@ public abstract class Piece {
      * @return A string representing the piece code.
      */
     public abstract String getPieceCode();
-}
\ No newline at end of file
+}
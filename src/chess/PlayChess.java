@@ -1,81 +1,104 @@
 package chess;
 
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Arrays;
 
 public class PlayChess {
 
-    public static void main(String[] args) {
-        // TODO Auto-generated method stub
-        Scanner sc = new Scanner(System.in);
+    // Two display characters per ReturnPiece.PieceType, indexed by ordinal (e.g. WP -> "wp", BQ -> "bQ").
+    private static final char[][] PIECE_CHARS = new char[ReturnPiece.PieceType.values().length][];
+    static {
+        for (ReturnPiece.PieceType type : ReturnPiece.PieceType.values()) {
+            String name = type.name();
+            PIECE_CHARS[type.ordinal()] = new char[] {
+                    Character.toLowerCase(name.charAt(0)),
+                    name.charAt(1) == 'P' ? 'p' : name.charAt(1)
+            };
+        }
+    }
+
+    // Reused across moves so rendering allocates nothing per move.
+    private static final StringBuilder out = new StringBuilder(512);
+    private static final ReturnPiece.PieceType[] squares = new ReturnPiece.PieceType[64];
+
+    public static void main(String[] args) throws IOException {
+        // "-q" skips board rendering, e.g. for scripted regression runs.
+        boolean renderBoard = !(args.length > 0 && args[0].equals("-q"));
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        PrintStream console = new PrintStream(new FileOutputStream(FileDescriptor.out), false);
         Chess.start();
 
-        String line = sc.nextLine();
-        while (!line.equals("quit")) {
+        String line = in.readLine();
+        while (line != null && !line.equals("quit")) {
+            out.setLength(0);
             if (line.equals("reset")) {
                 Chess.start();
-                System.out.println();
-                line = sc.nextLine();
-                continue;
-            }
-            // move
-            ReturnPlay res = Chess.play(line);
+                out.append('\n');
+            } else {
+                // move
+                ReturnPlay res = Chess.play(line);
 
-            // print result message
-            if (res.message != null) {
-                System.out.println("\n"+res.message);
-            }
-            System.out.println();
+                // result message
+                if (res.message != null) {
+                    out.append('\n').append(res.message).append('\n');
+                }
+                out.append('\n');
 
-            // print result board
-            printBoard(res.piecesOnBoard);
-            System.out.println();
+                // result board
+                if (renderBoard) {
+                    renderBoard(res.piecesOnBoard, out);
+                    out.append('\n');
+                }
+            }
+            console.append(out);
+            console.flush();
 
             // next line
-            line = sc.nextLine();
+            line = in.readLine();
         }
 
-        sc.close();
+        in.close();
     }
 
     static void printBoard(ArrayList<ReturnPiece> pieces) {
-        String[][] board = makeBlankBoard();
+        StringBuilder sb = new StringBuilder(256);
+        renderBoard(pieces, sb);
+        System.out.print(sb);
+    }
+
+    /**
+     * Appends the board, in the same layout printBoard has always used, to a buffer.
+     * @param pieces The pieces to show, or null for an empty board.
+     * @param sb     The buffer to append to.
+     */
+    static void renderBoard(ArrayList<ReturnPiece> pieces, StringBuilder sb) {
+        Arrays.fill(squares, null);
         if (pieces != null) {
-            printPiecesOnBoard(pieces, board);
-        }
-        for (int r=0; r < 8; r++) {
-            for (int c=0; c < 8; c++) {
-                System.out.print(board[r][c] + " ");
+            for (ReturnPiece rp : pieces) {
+                squares[(8 - rp.pieceRank) * 8 + rp.pieceFile.ordinal()] = rp.pieceType;
             }
-            System.out.println((8-r));
         }
-        System.out.println(" a  b  c  d  e  f  g  h");
-    }
-
-    static String[][] makeBlankBoard() {
-        String[][] board = new String[8][8];
-        for (int r=0; r < 8; r++) {
-            for (int c=0; c < 8; c++) {
-                if (r % 2 == 0) {
-                    board[r][c] = c % 2 == 0 ? "  " : "##";
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                ReturnPiece.PieceType type = squares[r * 8 + c];
+                if (type != null) {
+                    sb.append(PIECE_CHARS[type.ordinal()]);
+                } else if ((r + c) % 2 == 0) {
+                    sb.append("  ");
                 } else {
-                    board[r][c] = c % 2 == 0 ? "##" : "  ";
+                    sb.append("##");
                 }
+                sb.append(' ');
             }
+            sb.append(8 - r).append('\n');
         }
-        return board;
-    }
-
-    static void printPiecesOnBoard(
-            ArrayList<ReturnPiece> pieces, String[][] board) {
-        for (ReturnPiece rp: pieces) {
-            int file = (""+rp.pieceFile).charAt(0) - 'a';
-            String pieceStr = "" + rp.pieceType;
-            String ppstr = "";
-            ppstr += Character.toLowerCase(pieceStr.charAt(0));
-            ppstr += pieceStr.charAt(1) == 'P' ? 'p' : pieceStr.charAt(1);
-            board[8-rp.pieceRank][file] = ppstr;
-        }
+        sb.append(" a  b  c  d  e  f  g  h\n");
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,152 @@
+package chess;
+
+/**
+ * An immutable snapshot of a game position, for readers on other threads such as
+ * spectators and analysis workers. Each Game builds a new snapshot after every
+ * accepted move (and on start and loadFen) and publishes it through its own volatile
+ * reference, so readers never lock and never see the board half way through a move
+ * or a legality simulation. A snapshot never changes once built and can be shared
+ * by any number of readers.
+ *
+ * Squares are numbered row * 8 + col, with row 0 being rank 8, and hold piece codes
+ * (see Piece.getCode), or EMPTY.
+ */
+final class Position {
+    static final byte EMPTY = -1;
+    private static final String FEN_LETTERS = "PNBRQKpnbrqk";
+
+    private final byte[] squares;
+    private final boolean whiteToMove;
+    private final int castlingRights;
+    private final int enPassantSquare;
+    private final long key;
+    private final int ply;
+
+    /**
+     * Copies a position out of a board.
+     * @param board           The board to copy; it is not retained.
+     * @param whiteToMove     True if white is to move.
+     * @param castlingRights  Castling rights bits (see Chess.WHITE_KINGSIDE etc.).
+     * @param enPassantTarget The en passant target square as {row, col}, or null.
+     * @param key             The Zobrist key of the position.
+     * @param ply             Moves played since the game started or was loaded.
+     */
+    Position(Piece[][] board, boolean whiteToMove, int castlingRights, int[] enPassantTarget, long key, int ply) {
+        squares = new byte[64];
+        for (int r = 0; r < 8; r++) {
+            Piece[] row = board[r];
+            for (int c = 0; c < 8; c++) {
+                Piece p = row[c];
+                squares[r * 8 + c] = p == null ? EMPTY : (byte) p.getCode();
+            }
+        }
+        this.whiteToMove = whiteToMove;
+        this.castlingRights = castlingRights;
+        this.enPassantSquare = enPassantTarget == null ? -1 : enPassantTarget[0] * 8 + enPassantTarget[1];
+        this.key = key;
+        this.ply = ply;
+    }
+
+    /**
+     * Returns the piece code on a square.
+     * @param square Square index row * 8 + col.
+     * @return The piece code 0-11, or EMPTY.
+     */
+    int code(int square) {
+        return squares[square];
+    }
+
+    /**
+     * Returns the piece on a square.
+     * @param row Row index (0-7), 0 being rank 8.
+     * @param col Column index (0-7), 0 being file 'a'.
+     * @return The piece, or null if the square is empty.
+     */
+    Piece pieceAt(int row, int col) {
+        int code = squares[row * 8 + col];
+        return code == EMPTY ? null : Piece.fromCode(code);
+    }
+
+    boolean isWhiteToMove() {
+        return whiteToMove;
+    }
+
+    int castlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * @return The en passant target square (row * 8 + col), or -1 if no en passant
+     *         capture is possible.
+     */
+    int enPassantSquare() {
+        return enPassantSquare;
+    }
+
+    /**
+     * @return The Zobrist key of the position (see Chess.positionKey).
+     */
+    long key() {
+        return key;
+    }
+
+    /**
+     * @return The number of moves played since the game started or was loaded.
+     */
+    int ply() {
+        return ply;
+    }
+
+    /**
+     * Appends the board as 64 FEN letters, a8..h8 down to a1..h1, with '.' for an empty square.
+     * @param sb The builder to append to.
+     */
+    void appendBoard(StringBuilder sb) {
+        for (byte code : squares) {
+            sb.append(code == EMPTY ? '.' : FEN_LETTERS.charAt(code));
+        }
+    }
+
+    /**
+     * Returns the position in Forsyth-Edwards Notation, without the move counters,
+     * in the form Chess.loadFen accepts.
+     * @return The FEN string.
+     */
+    String toFen() {
+        StringBuilder sb = new StringBuilder(80);
+        for (int r = 0; r < 8; r++) {
+            int empty = 0;
+            for (int c = 0; c < 8; c++) {
+                int code = squares[r * 8 + c];
+                if (code == EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sb.append(empty);
+                    empty = 0;
+                }
+                sb.append(FEN_LETTERS.charAt(code));
+            }
+            if (empty > 0) sb.append(empty);
+            if (r < 7) sb.append('/');
+        }
+        sb.append(whiteToMove ? " w " : " b ");
+        if (castlingRights == 0) sb.append('-');
+        if ((castlingRights & Chess.WHITE_KINGSIDE) != 0) sb.append('K');
+        if ((castlingRights & Chess.WHITE_QUEENSIDE) != 0) sb.append('Q');
+        if ((castlingRights & Chess.BLACK_KINGSIDE) != 0) sb.append('k');
+        if ((castlingRights & Chess.BLACK_QUEENSIDE) != 0) sb.append('q');
+        sb.append(' ');
+        if (enPassantSquare < 0) {
+            sb.append('-');
+        } else {
+            sb.append((char) ('a' + enPassantSquare % 8)).append(8 - enPassantSquare / 8);
+        }
+        return sb.toString();
+    }
+
+    public String toString() {
+        return toFen();
+    }
+}
@@ -0,0 +1,370 @@
+package chess;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * On-disk index from position hash to the games (and move numbers) that reached it,
+ * for "find all games that reached this position" without replaying the corpus.
+ *
+ * Building streams a file of games (one per line, moves comma-separated in Chess.play
+ * notation; the game id is the 1-based line number) through Game.legalMove and
+ * Game.makeMove, which build no play result for each move. It collects a
+ * (position key, game, ply) record for every position, sorts fixed-size runs in
+ * memory, spills them to temporary files and k-way merges them into the index. Each
+ * game is listed once per position, at the earliest ply it got there.
+ *
+ * The index file is a 16-byte header (magic, record count) followed by 16-byte
+ * records sorted by key: key (long), game id (int), ply (int). Lookups binary-search
+ * a read-only memory mapping of the file.
+ */
+class PositionIndex implements Closeable {
+
+    static final long MAGIC = 0x43485353494458L;  // "CHSSIDX"
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 16;
+    static final int DEFAULT_RUN_SIZE = 1 << 20;
+
+    // Records per mapped segment; a multiple of the record size that keeps each mapping under 2 GB.
+    private static final long RECORDS_PER_SEGMENT = 1L << 26;
+
+    /** A game and ply at which a position occurred. */
+    static final class Hit {
+        final int gameId;
+        final int ply;
+
+        Hit(int gameId, int ply) {
+            this.gameId = gameId;
+            this.ply = ply;
+        }
+
+        public String toString() {
+            return gameId + "@" + ply;
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] segments;
+    private final long count;
+
+    private PositionIndex(RandomAccessFile file, MappedByteBuffer[] segments, long count) {
+        this.file = file;
+        this.segments = segments;
+        this.count = count;
+    }
+
+    /**
+     * Usage:
+     *   build &lt;games file&gt; &lt;index file&gt;
+     *   query &lt;index file&gt; [move, move, ...]
+     *   verify &lt;games file&gt; &lt;index file&gt;
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("build")) {
+            long records = build(new File(args[1]), new File(args[2]), DEFAULT_RUN_SIZE);
+            System.out.println(records + " records");
+        } else if (args.length >= 2 && args[0].equals("query")) {
+            StringBuilder moves = new StringBuilder();
+            for (int i = 2; i < args.length; i++) moves.append(args[i]).append(' ');
+            Game game = new Game();
+            for (String move : moves.toString().split(",")) {
+                if (!move.isBlank()) game.play(move.trim());
+            }
+            try (PositionIndex index = open(new File(args[1]))) {
+                System.out.println(index.lookup(game.positionKey()));
+            }
+        } else if (args.length >= 3 && args[0].equals("verify")) {
+            try (PositionIndex index = open(new File(args[2]))) {
+                System.out.println(verify(new File(args[1]), index));
+            }
+        } else {
+            System.out.println("usage: build <games> <index> | query <index> [moves] | verify <games> <index>");
+        }
+    }
+
+    /**
+     * Builds an index from a games file.
+     * @param games   One game per line, moves comma-separated.
+     * @param index   The index file to write.
+     * @param runSize Records sorted in memory before spilling a run.
+     * @return The number of records in the index.
+     * @throws IOException If reading or writing fails.
+     */
+    static long build(File games, File index, int runSize) throws IOException {
+        List<File> runs = new ArrayList<>();
+        long[] keys = new long[runSize];
+        long[] values = new long[runSize];
+        int n = 0;
+        Game game = new Game();
+        try (BufferedReader in = new BufferedReader(new FileReader(games))) {
+            String line;
+            int gameId = 0;
+            while ((line = in.readLine()) != null) {
+                gameId++;
+                game.start();
+                int ply = 0;
+                String[] moves = line.isBlank() ? new String[0] : line.split(",");
+                while (true) {
+                    if (n == runSize) {
+                        runs.add(spill(keys, values, n));
+                        n = 0;
+                    }
+                    keys[n] = game.positionKey();
+                    values[n] = ((long) gameId << 32) | ply;
+                    n++;
+                    if (ply == moves.length) break;
+                    short move = game.legalMove(moves[ply]);
+                    if (move == Move.NONE) break;
+                    game.makeMove(move);
+                    ply++;
+                }
+            }
+            if (n > 0) {
+                runs.add(spill(keys, values, n));
+            }
+            return merge(runs, index);
+        } finally {
+            for (File run : runs) {
+                run.delete();
+            }
+        }
+    }
+
+    /**
+     * Checks an index against the games it was built from: every position of every game
+     * must list its game at or before that ply, and positions must be identified by key
+     * alone, so a position reached by two move orders (a transposition) has one key and
+     * one key never stands for two positions. Positions are compared by their FEN. All
+     * distinct positions are held in memory, so this is meant for test corpora.
+     * @param games The games file the index was built from.
+     * @param index The open index.
+     * @return A one-line summary; it starts with "OK" if nothing was wrong.
+     * @throws IOException If the games file cannot be read.
+     */
+    static String verify(File games, PositionIndex index) throws IOException {
+        HashMap<String, Long> keyByFen = new HashMap<>();
+        HashMap<Long, String> fenByKey = new HashMap<>();
+        long positions = 0, missing = 0, splitKeys = 0, sharedKeys = 0;
+        Game game = new Game();
+        try (BufferedReader in = new BufferedReader(new FileReader(games))) {
+            String line;
+            int gameId = 0;
+            while ((line = in.readLine()) != null) {
+                gameId++;
+                game.start();
+                String[] moves = line.isBlank() ? new String[0] : line.split(",");
+                for (int ply = 0; ; ply++) {
+                    long key = game.positionKey();
+                    String fen = game.position().toFen();
+                    positions++;
+                    boolean listed = false;
+                    for (Hit hit : index.lookup(key)) {
+                        if (hit.gameId == gameId && hit.ply <= ply) listed = true;
+                    }
+                    if (!listed) missing++;
+                    Long known = keyByFen.putIfAbsent(fen, key);
+                    if (known != null && known != key) splitKeys++;
+                    String other = fenByKey.putIfAbsent(key, fen);
+                    if (other != null && !other.equals(fen)) sharedKeys++;
+                    if (ply == moves.length) break;
+                    short move = game.legalMove(moves[ply]);
+                    if (move == Move.NONE) break;
+                    game.makeMove(move);
+                }
+            }
+        }
+        boolean ok = missing == 0 && splitKeys == 0 && sharedKeys == 0;
+        return (ok ? "OK" : "FAILED") + " positions=" + positions + " distinct=" + keyByFen.size()
+                + " missing=" + missing + " positionsWithTwoKeys=" + splitKeys
+                + " keysWithTwoPositions=" + sharedKeys;
+    }
+
+    /**
+     * Opens an index for lookups.
+     * @param index The index file.
+     * @return The open index; close it when done.
+     * @throws IOException If the file is missing or not an index.
+     */
+    static PositionIndex open(File index) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(index, "r");
+        try {
+            if (file.length() < HEADER_BYTES || file.readLong() != MAGIC) {
+                throw new IOException("Not a position index: " + index);
+            }
+            long count = file.readLong();
+            FileChannel channel = file.getChannel();
+            int nSegments = (int) ((count + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT);
+            MappedByteBuffer[] segments = new MappedByteBuffer[nSegments];
+            for (int i = 0; i < nSegments; i++) {
+                long first = i * RECORDS_PER_SEGMENT;
+                long records = Math.min(RECORDS_PER_SEGMENT, count - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + first * RECORD_BYTES, records * RECORD_BYTES);
+            }
+            return new PositionIndex(file, segments, count);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    long size() {
+        return count;
+    }
+
+    /**
+     * Finds every game that reached a position.
+     * @param key The position key (see Chess.positionKey).
+     * @return The games and plies, ordered by game id.
+     */
+    List<Hit> lookup(long key) {
+        long lo = 0, hi = count;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (keyAt(mid) < key) lo = mid + 1;
+            else hi = mid;
+        }
+        List<Hit> hits = new ArrayList<>();
+        for (long i = lo; i < count && keyAt(i) == key; i++) {
+            MappedByteBuffer segment = segments[(int) (i / RECORDS_PER_SEGMENT)];
+            int offset = (int) (i % RECORDS_PER_SEGMENT) * RECORD_BYTES;
+            hits.add(new Hit(segment.getInt(offset + 8), segment.getInt(offset + 12)));
+        }
+        return hits;
+    }
+
+    private long keyAt(long i) {
+        MappedByteBuffer segment = segments[(int) (i / RECORDS_PER_SEGMENT)];
+        return segment.getLong((int) (i % RECORDS_PER_SEGMENT) * RECORD_BYTES);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /** Sorts one run by (key, game, ply) and writes it to a temporary file. */
+    private static File spill(long[] keys, long[] values, int n) throws IOException {
+        sort(keys, values, 0, n - 1);
+        File run = File.createTempFile("position-run", ".bin");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(run), 1 << 16))) {
+            for (int i = 0; i < n; i++) {
+                out.writeLong(keys[i]);
+                out.writeLong(values[i]);
+            }
+        }
+        return run;
+    }
+
+    /** One sorted run being read during the merge. */
+    private static final class Run {
+        final DataInputStream in;
+        long key;
+        long value;
+
+        Run(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            try {
+                key = in.readLong();
+                value = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                in.close();
+                return false;
+            }
+        }
+    }
+
+    /** Merges sorted runs into the index, keeping the first ply per (key, game). */
+    private static long merge(List<File> runFiles, File index) throws IOException {
+        PriorityQueue<Run> queue = new PriorityQueue<>((a, b) -> a.key != b.key
+                ? Long.compare(a.key, b.key)
+                : Long.compare(a.value, b.value));
+        long count = 0;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(index), 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeLong(0L);  // record count, filled in below
+            for (File file : runFiles) {
+                Run run = new Run(file);
+                if (run.next()) queue.add(run);
+            }
+            long lastKey = 0;
+            int lastGame = -1;
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                int game = (int) (run.value >>> 32);
+                if (count == 0 || run.key != lastKey || game != lastGame) {
+                    out.writeLong(run.key);
+                    out.writeInt(game);
+                    out.writeInt((int) run.value);
+                    count++;
+                    lastKey = run.key;
+                    lastGame = game;
+                }
+                if (run.next()) queue.add(run);
+            }
+        } finally {
+            for (Run run : queue) {
+                run.in.close();
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(index, "rw")) {
+            raf.seek(8);
+            raf.writeLong(count);
+        }
+        return count;
+    }
+
+    /** Sorts parallel arrays by key, then value. */
+    private static void sort(long[] keys, long[] values, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long pivotKey = keys[mid], pivotValue = values[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (compare(keys[i], values[i], pivotKey, pivotValue) < 0) i++;
+                while (compare(keys[j], values[j], pivotKey, pivotValue) > 0) j--;
+                if (i <= j) {
+                    long k = keys[i]; keys[i] = keys[j]; keys[j] = k;
+                    long v = values[i]; values[i] = values[j]; values[j] = v;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller half, loop on the larger.
+            if (j - lo < hi - i) {
+                sort(keys, values, lo, j);
+                lo = i;
+            } else {
+                sort(keys, values, i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    private static int compare(long key, long value, long otherKey, long otherValue) {
+        return key != otherKey ? Long.compare(key, otherKey) : Long.compare(value, otherValue);
+    }
+}
@@ -0,0 +1,88 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed line geometry shared by the sliding pieces. Squares are numbered
+ * row * 8 + col, with row 0 being rank 8, and masks use the same bit numbering.
+ */
+class Rays {
+    // Squares reachable along a rank/file or a diagonal from each square on an empty board.
+    static final long[] ORTHOGONAL = new long[64];
+    static final long[] DIAGONAL = new long[64];
+
+    // Full line through two aligned squares (edge to edge), or 0 if they are not aligned.
+    static final long[][] LINE = new long[64][64];
+
+    // Squares strictly between two aligned squares, nearest the first square first.
+    // Pairs that are not aligned (or adjacent) share the empty array.
+    static final int[][][] BETWEEN_SQUARES = new int[64][64][];
+
+    private static final int[] NONE = new int[0];
+
+    // Step (row, col) of each ray direction, orthogonal first.
+    static final int[][] DIRECTIONS = {
+            {-1, 0}, {1, 0}, {0, -1}, {0, 1},      // orthogonal
+            {-1, -1}, {-1, 1}, {1, -1}, {1, 1}     // diagonal
+    };
+
+    static {
+        for (int[][] row : BETWEEN_SQUARES) {
+            Arrays.fill(row, NONE);
+        }
+        for (int from = 0; from < 64; from++) {
+            int fromRow = from / 8, fromCol = from % 8;
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                int dr = DIRECTIONS[d][0], dc = DIRECTIONS[d][1];
+                long line = lineThrough(fromRow, fromCol, dr, dc);
+                int[] path = new int[7];
+                int steps = 0;
+                for (int r = fromRow + dr, c = fromCol + dc; inBounds(r, c); r += dr, c += dc) {
+                    int to = r * 8 + c;
+                    if (d < 4) ORTHOGONAL[from] |= 1L << to;
+                    else DIAGONAL[from] |= 1L << to;
+                    LINE[from][to] = line;
+                    if (steps > 0) {
+                        int[] between = new int[steps];
+                        System.arraycopy(path, 0, between, 0, steps);
+                        BETWEEN_SQUARES[from][to] = between;
+                    }
+                    path[steps++] = to;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if every square strictly between two aligned squares is empty.
+     * @param from  Source square.
+     * @param to    Destination square, aligned with from.
+     * @param board The board.
+     * @return True if nothing stands between the squares.
+     */
+    static boolean isPathClear(int from, int to, Piece[][] board) {
+        for (int sq : BETWEEN_SQUARES[from][to]) {
+            if (board[sq >> 3][sq & 7] != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long lineThrough(int row, int col, int dr, int dc) {
+        // Walk back to the edge, then forward across the whole board.
+        while (inBounds(row - dr, col - dc)) {
+            row -= dr;
+            col -= dc;
+        }
+        long line = 0L;
+        for (; inBounds(row, col); row += dr, col += dc) {
+            line |= 1L << (row * 8 + col);
+        }
+        return line;
+    }
+
+    private static boolean inBounds(int r, int c) {
+        return r >= 0 && r < 8 && c >= 0 && c < 8;
+    }
+}
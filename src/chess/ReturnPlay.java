@@ -10,4 +10,11 @@ class ReturnPlay {
 
     ArrayList<ReturnPiece> piecesOnBoard;
     Message message;
+
+    // Delta results (see Chess.playDelta): piecesOnBoard is left null and changedSquares
+    // lists only the squares this move changed, each with its new piece, or a null
+    // pieceType if the square was emptied.
+    ArrayList<ReturnPiece> changedSquares;
+    // Moves played in the game after this result; a client that misses one resyncs.
+    int sequence;
 }
\ No newline at end of file
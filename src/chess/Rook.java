@@ -2,53 +2,45 @@ package chess;
 
 public class Rook extends Piece {
 
+    /** The shared white rook. */
+    public static final Rook WHITE = new Rook(true);
+    /** The shared black rook. */
+    public static final Rook BLACK = new Rook(false);
+
     /**
-     * Constructs a Rook at the specified board location.
-     * @param row Row index (0-7), where 0 corresponds to rank 8.
-     * @param col Column index (0-7), where 0 corresponds to file 'a'.
+     * Constructs the rook of one colour; use WHITE or BLACK.
      * @param isWhite True if the rook is white, false if black.
      */
-    public Rook(int row, int col, boolean isWhite) {
-        super(row, col, isWhite);
+    private Rook(boolean isWhite) {
+        super(isWhite, ROOK);
     }
 
     /**
      * Validates the rook's move.
      * The rook moves horizontally or vertically any number of squares.
-     * All squares between the starting position and the destination must be empty.
+     * All squares between the starting position and the destination must be empty;
+     * the line and the squares to check come from the shared Rays tables.
      *
-     * @param toRow Destination row index (0-7).
-     * @param toCol Destination column index (0-7).
-     * @param board The current board represented as a 2D array of Piece objects.
+     * @param fromRow Source row index (0-7).
+     * @param fromCol Source column index (0-7).
+     * @param toRow   Destination row index (0-7).
+     * @param toCol   Destination column index (0-7).
+     * @param board   The current board represented as a 2D array of Piece objects.
      * @return True if the rook's move is valid; false otherwise.
      */
     @Override
-    public boolean isMoveValid(int toRow, int toCol, Piece[][] board) {
-        // Rook must move in a straight line: either row stays the same or column stays the same.
-        if (this.row != toRow && this.col != toCol) {
-            return false;
-        }
+    public boolean isMoveValid(int fromRow, int fromCol, int toRow, int toCol, Piece[][] board) {
+        int from = fromRow * 8 + fromCol;
+        int to = toRow * 8 + toCol;
 
-        // Moving horizontally:
-        if (this.row == toRow) {
-            int startCol = Math.min(this.col, toCol) + 1;
-            int endCol = Math.max(this.col, toCol);
-            for (int c = startCol; c < endCol; c++) {
-                if (board[this.row][c] != null) {
-                    return false; // Path is blocked.
-                }
-            }
+        // Rook must move in a straight line along its rank or file.
+        if ((Rays.ORTHOGONAL[from] & (1L << to)) == 0) {
+            return false;
         }
 
-        // Moving vertically:
-        if (this.col == toCol) {
-            int startRow = Math.min(this.row, toRow) + 1;
-            int endRow = Math.max(this.row, toRow);
-            for (int r = startRow; r < endRow; r++) {
-                if (board[r][this.col] != null) {
-                    return false; // Path is blocked.
-                }
-            }
+        // All squares between must be empty.
+        if (!Rays.isPathClear(from, to, board)) {
+            return false; // Path is blocked.
         }
 
         // Check destination square:
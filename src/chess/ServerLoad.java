@@ -0,0 +1,192 @@
+package chess;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Load generator for ChessServer: opens many connections and keeps each one playing a
+ * short opening in a loop, with one request in flight per connection, and reports the
+ * round-trip latency of every request (send to the end of the reply frame) with the
+ * same histogram ChessMetrics uses. One selector thread drives every connection, so
+ * the client side scales the way the server does.
+ *
+ * By default every connection sends its next move as soon as the answer arrives, which
+ * measures the server at saturation: latency is then simply connections / throughput.
+ * With -think, each connection waits that many milliseconds between an answer and its
+ * next move, like a player, which measures latency at a given number of connected games.
+ *
+ * Each connection is one file descriptor on each side, and from a single source
+ * address at most one connection per ephemeral port, so large runs need raised
+ * descriptor limits (ulimit -n) on both processes.
+ */
+public class ServerLoad {
+
+    // A short game and a reset, replayed by every connection.
+    private static final String[] SCRIPT = {
+            "e2 e4", "e7 e5", "g1 f3", "b8 c6", "f1 b5", "a7 a6", "b5 a4", "g8 f6", "reset"
+    };
+    private static final byte[][] REQUESTS = new byte[SCRIPT.length][];
+
+    static {
+        for (int i = 0; i < SCRIPT.length; i++) {
+            REQUESTS[i] = (SCRIPT[i] + "\n").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /** One client connection. */
+    private static final class Client {
+        final ByteBuffer readBuffer = ByteBuffer.allocate(256);
+        SelectionKey key;
+        ByteBuffer request;
+        int step;
+        long sentAt;
+        long dueAt;
+    }
+
+    /**
+     * Usage: ServerLoad [-host H] [-port N] [-connections N] [-seconds N] [-warmup N] [-think MS]
+     * Latency is recorded only after the warmup seconds, once every connection is open.
+     */
+    public static void main(String[] args) throws IOException {
+        String host = "127.0.0.1";
+        int port = ChessServer.DEFAULT_PORT, connections = 1000, seconds = 10, warmup = 2, think = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-host": host = args[i + 1]; break;
+                case "-port": port = Integer.parseInt(args[i + 1]); break;
+                case "-connections": connections = Integer.parseInt(args[i + 1]); break;
+                case "-seconds": seconds = Integer.parseInt(args[i + 1]); break;
+                case "-warmup": warmup = Integer.parseInt(args[i + 1]); break;
+                case "-think": think = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        ChessMetrics.Histogram latency = new ChessMetrics.Histogram();
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        long thinkNanos = think * 1_000_000L;
+        // Connections waiting out their think time, soonest first. Each one's first move
+        // is spread at random over one think time, so the moves do not arrive in waves.
+        PriorityQueue<Client> thinking = new PriorityQueue<>((a, b) -> Long.compare(a.dueAt, b.dueAt));
+        Random random = new Random(1);
+        int open = 0, failed = 0;
+        long requests = 0;
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < connections; i++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                channel.connect(address);
+                Client client = new Client();
+                client.key = channel.register(selector, SelectionKey.OP_CONNECT, client);
+            }
+
+            long startedAt = System.nanoTime();
+            long recordFrom = startedAt + warmup * 1_000_000_000L;
+            long endAt = recordFrom + seconds * 1_000_000_000L;
+            while (System.nanoTime() < endAt) {
+                Client next = thinking.peek();
+                long wait = next == null ? 100 : (next.dueAt - System.nanoTime()) / 1_000_000L;
+                if (wait > 0) selector.select(wait);
+                else selector.selectNow();
+                long now = System.nanoTime();
+                while ((next = thinking.peek()) != null && next.dueAt <= now) {
+                    thinking.poll();
+                    if (next.key.isValid()) send(next.key, next);
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Client client = (Client) key.attachment();
+                    SocketChannel channel = (SocketChannel) key.channel();
+                    try {
+                        if (key.isConnectable()) {
+                            channel.finishConnect();
+                            open++;
+                            if (thinkNanos == 0) {
+                                send(key, client);
+                            } else {
+                                client.dueAt = now + (long) (random.nextDouble() * thinkNanos);
+                                key.interestOps(0);
+                                thinking.add(client);
+                            }
+                        } else if (key.isWritable()) {
+                            flush(key, client);
+                        } else if (key.isReadable()) {
+                            if (channel.read(client.readBuffer) < 0) throw new IOException("Closed by server");
+                            if (endsFrame(client.readBuffer)) {
+                                client.readBuffer.clear();
+                                if (client.sentAt >= recordFrom) {
+                                    latency.record(now - client.sentAt);
+                                    requests++;
+                                }
+                                client.step = (client.step + 1) % SCRIPT.length;
+                                if (thinkNanos == 0) {
+                                    send(key, client);
+                                } else {
+                                    client.dueAt = now + thinkNanos;
+                                    key.interestOps(0);
+                                    thinking.add(client);
+                                }
+                            } else if (!client.readBuffer.hasRemaining()) {
+                                client.readBuffer.clear();  // longer than any frame; keep scanning
+                            }
+                        }
+                    } catch (IOException e) {
+                        failed++;
+                        key.cancel();
+                        channel.close();
+                    }
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+        }
+
+        System.out.printf("connections=%d open=%d failed=%d requests=%d throughput=%.0f/s%n",
+                connections, open, failed, requests, requests / (double) seconds);
+        System.out.printf("latency meanUs=%.1f p50Us=%.1f p99Us=%.1f p999Us=%.1f maxUs=%.1f%n",
+                latency.getMeanNanos() / 1000.0, latency.getPercentileNanos(50) / 1000.0,
+                latency.getPercentileNanos(99) / 1000.0, latency.getPercentileNanos(99.9) / 1000.0,
+                latency.getMaxNanos() / 1000.0);
+        System.out.println("server " + serverMetrics(address));
+    }
+
+    // Asks the server for its own play latency, which leaves out the network and client.
+    private static String serverMetrics(InetSocketAddress address) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            channel.write(ByteBuffer.wrap("metrics\n".getBytes(StandardCharsets.US_ASCII)));
+            ByteBuffer reply = ByteBuffer.allocate(256);
+            while (!endsFrame(reply) && channel.read(reply) >= 0) {
+                // Read until the end of the frame.
+            }
+            return new String(reply.array(), 0, reply.position(), StandardCharsets.US_ASCII).trim();
+        }
+    }
+
+    private static void send(SelectionKey key, Client client) throws IOException {
+        client.request = ByteBuffer.wrap(REQUESTS[client.step]);
+        client.sentAt = System.nanoTime();
+        flush(key, client);
+    }
+
+    private static void flush(SelectionKey key, Client client) throws IOException {
+        ((SocketChannel) key.channel()).write(client.request);
+        key.interestOps(client.request.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    // True once the buffer holds a complete reply: every frame is one line.
+    private static boolean endsFrame(ByteBuffer buffer) {
+        return buffer.position() > 0 && buffer.get(buffer.position() - 1) == '\n';
+    }
+}
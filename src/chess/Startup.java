@@ -0,0 +1,55 @@
+package chess;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures cold start: the time from JVM start to the first accepted play(), as the JVM
+ * reports its uptime, so JVM boot is included. Run it on its own JVM; a warmed-up JVM
+ * measures nothing useful. It also prints the engine's own share, start() plus the first
+ * play(), which leaves out JVM boot and loading this class.
+ *
+ * The rules engine does its table work (Zobrist keys, rays, the start position and its
+ * keys) once, in static initializers, and Chess.start() only copies the start template.
+ * What remains on a cold start is mostly class loading and verification, which a class
+ * data sharing archive mostly removes. The archive is dumped at exit, so running this
+ * class makes a suitable training run. The classes must come from a jar, not a directory,
+ * and from a fresh build (the checked-in out directory is not kept up to date):
+ * <pre>
+ *   javac -encoding UTF-8 -d build src/chess/*.java
+ *   jar cf chess.jar -C build chess
+ *   java -XX:ArchiveClassesAtExit=chess.jsa -cp chess.jar chess.Startup
+ *   java -XX:SharedArchiveFile=chess.jsa -cp chess.jar chess.PlayChess
+ * </pre>
+ */
+public class Startup {
+
+    /**
+     * Usage: Startup [budgetMillis]
+     * Exits with status 1 if the first play() is done later than the budget after JVM
+     * start (50 ms by default).
+     */
+    public static void main(String[] args) {
+        long budgetMillis = args.length > 0 ? Long.parseLong(args[0]) : 50;
+
+        long t0 = System.nanoTime();
+        Chess.start();
+        long t1 = System.nanoTime();
+        ReturnPlay res = Chess.play("e2 e4");
+        long t2 = System.nanoTime();
+
+        // Read only after timing, so loading the management classes is not counted.
+        long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime()
+                - (System.nanoTime() - t2) / 1_000_000;
+        System.out.println("start " + (t1 - t0) / 1000 + " us, first play " + (t2 - t1) / 1000
+                + " us (" + res.message + "), engine total " + (t2 - t0) / 1000 + " us");
+        System.out.println("first play done " + uptimeMillis + " ms after JVM start");
+        if (res.message != null) {
+            System.out.println("first play was rejected");
+            System.exit(1);
+        }
+        if (uptimeMillis > budgetMillis) {
+            System.out.println("over budget of " + budgetMillis + " ms");
+            System.exit(1);
+        }
+    }
+}
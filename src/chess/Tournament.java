@@ -0,0 +1,310 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Self-play harness: plays many games between two engines and reports the result with
+ * Elo and SPRT statistics, to check that a change to an engine (or to the rules code)
+ * does not make it weaker.
+ *
+ * Games start from FEN positions read from an openings file (one per line; blank lines
+ * and lines starting with '#' are skipped), each played twice with colours swapped. They
+ * run as tasks on a thread pool, in parallel, and are reported as they finish. Every game
+ * is played on its own Game with its own pair of engines (the "search" engine keeps
+ * search state), so games share nothing but the engine's thread-safe caches. Each game
+ * has its own random seed, so results do not depend on scheduling.
+ */
+class Tournament {
+
+    static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -";
+
+    /** Chooses moves for one game at a time. */
+    interface Engine {
+        /**
+         * @param game  The game to move in; do not modify.
+         * @param legal The packed legal moves of the game's position, never empty; do not modify.
+         * @param rnd   The game's random source.
+         * @return One of the legal moves.
+         */
+        short chooseMove(Game game, short[] legal, Random rnd);
+    }
+
+    /**
+     * Creates an engine by name: "random" plays any legal move, "greedy" the most
+     * valuable capture or promotion, "search" the best move of a one-ply GameAnalyzer search.
+     * @param name The engine name.
+     * @return The engine.
+     * @throws IllegalArgumentException If the name is unknown.
+     */
+    static Engine engine(String name) {
+        switch (name) {
+            case "random":
+                return (game, legal, rnd) -> legal[rnd.nextInt(legal.length)];
+            case "greedy":
+                return (game, legal, rnd) -> {
+                    short[] best = new short[legal.length];
+                    int n = 0;
+                    int bestScore = Integer.MIN_VALUE;
+                    for (short move : legal) {
+                        int score = UciChess.scoreMove(game, move);
+                        if (score > bestScore) {
+                            bestScore = score;
+                            n = 0;
+                        }
+                        if (score == bestScore) best[n++] = move;
+                    }
+                    return best[rnd.nextInt(n)];
+                };
+            case "search": {
+                GameAnalyzer analyzer = new GameAnalyzer(1, 1, 20_000);
+                return (game, legal, rnd) -> analyzer.bestMove(game);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + name);
+        }
+    }
+
+    /** How a game ended. */
+    enum Termination { CHECKMATE, STALEMATE, MOVE_LIMIT, ILLEGAL_MOVE }
+
+    /** The outcome of one game, with the score from the first engine's point of view. */
+    static final class GameResult {
+        int game;
+        boolean firstIsWhite;
+        int plies;
+        Termination termination;
+        double score;  // 1 win, 0.5 draw, 0 loss for the first engine
+
+        public String toString() {
+            String result = score == 1 ? (firstIsWhite ? "1-0" : "0-1")
+                    : score == 0 ? (firstIsWhite ? "0-1" : "1-0") : "1/2-1/2";
+            return "game " + game + " " + result + " " + termination.name().toLowerCase()
+                    + " plies=" + plies + (firstIsWhite ? "" : " (colours swapped)");
+        }
+    }
+
+    /** Running totals for the first engine, with Elo and SPRT estimates. */
+    static final class Stats {
+        int wins;
+        int draws;
+        int losses;
+
+        void add(GameResult result) {
+            if (result.score == 1) wins++;
+            else if (result.score == 0) losses++;
+            else draws++;
+        }
+
+        int games() {
+            return wins + draws + losses;
+        }
+
+        double score() {
+            return games() == 0 ? 0.5 : (wins + 0.5 * draws) / games();
+        }
+
+        /** Per-game variance of the score. */
+        double variance() {
+            int n = games();
+            if (n == 0) return 0;
+            double m = score();
+            return (wins * (1 - m) * (1 - m) + draws * (0.5 - m) * (0.5 - m) + losses * m * m) / n;
+        }
+
+        /** Elo difference implied by the score. */
+        double elo() {
+            return eloOf(score());
+        }
+
+        /** Half-width of the 95% confidence interval of elo(). */
+        double eloMargin() {
+            double p = score();
+            if (games() == 0 || p <= 0 || p >= 1) return Double.POSITIVE_INFINITY;
+            double stderr = Math.sqrt(variance() / games());
+            return 1.96 * stderr * 400 / (Math.log(10) * p * (1 - p));
+        }
+
+        /**
+         * Log-likelihood ratio of H1 (elo1) against H0 (elo0), using the normal
+         * approximation of the per-game score.
+         */
+        double llr(double elo0, double elo1) {
+            double v = variance();
+            if (v == 0) return 0;
+            double s0 = scoreOf(elo0), s1 = scoreOf(elo1);
+            double sum = wins + 0.5 * draws;
+            return (s1 - s0) * (2 * sum - games() * (s0 + s1)) / (2 * v);
+        }
+
+        public String toString() {
+            return String.format("+%d =%d -%d score=%.3f elo=%.1f +/- %.1f",
+                    wins, draws, losses, score(), elo(), eloMargin());
+        }
+
+        static double scoreOf(double elo) {
+            return 1 / (1 + Math.pow(10, -elo / 400));
+        }
+
+        static double eloOf(double score) {
+            if (score <= 0) return Double.NEGATIVE_INFINITY;
+            if (score >= 1) return Double.POSITIVE_INFINITY;
+            return 400 * Math.log10(score / (1 - score));
+        }
+    }
+
+    private final String first;
+    private final String second;
+    private final int maxPlies;
+    private final long seed;
+
+    /**
+     * @param first    Name of the engine under test (see engine).
+     * @param second   Name of its opponent.
+     * @param maxPlies Plies after which a game is drawn.
+     * @param seed     Base random seed; game i uses seed + i.
+     */
+    Tournament(String first, String second, int maxPlies, long seed) {
+        this.first = first;
+        this.second = second;
+        this.maxPlies = maxPlies;
+        this.seed = seed;
+    }
+
+    /**
+     * Usage: Tournament [-games N] [-threads N] [-plies N] [-seed N] [-openings file]
+     *                   [-elo0 E] [-elo1 E] firstEngine secondEngine
+     * Stops early once the SPRT (alpha = beta = 0.05) accepts either hypothesis.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = 1000, threads = Runtime.getRuntime().availableProcessors(), plies = 300;
+        long seed = 1;
+        double elo0 = 0, elo1 = 10;
+        String openingsFile = null;
+        List<String> engines = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-games": games = Integer.parseInt(args[++i]); break;
+                case "-threads": threads = Integer.parseInt(args[++i]); break;
+                case "-plies": plies = Integer.parseInt(args[++i]); break;
+                case "-seed": seed = Long.parseLong(args[++i]); break;
+                case "-openings": openingsFile = args[++i]; break;
+                case "-elo0": elo0 = Double.parseDouble(args[++i]); break;
+                case "-elo1": elo1 = Double.parseDouble(args[++i]); break;
+                default: engines.add(args[i]);
+            }
+        }
+        if (engines.size() != 2) {
+            System.out.println("usage: Tournament [options] firstEngine secondEngine (random, greedy, search)");
+            return;
+        }
+        ChessMetrics.enabled = false;
+        List<String> openings = openingsFile == null ? List.of(START_FEN) : readOpenings(openingsFile);
+        engine(engines.get(0));
+        engine(engines.get(1));  // reject unknown names before any game starts
+        Tournament tournament = new Tournament(engines.get(0), engines.get(1), plies, seed);
+
+        double lower = Math.log(0.05 / 0.95), upper = Math.log(0.95 / 0.05);
+        Stats stats = new Stats();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CompletionService<GameResult> done = new ExecutorCompletionService<>(pool);
+            for (int i = 0; i < games; i++) {
+                int game = i;
+                done.submit(() -> tournament.playGame(game, openings.get(game / 2 % openings.size()), game % 2 == 0));
+            }
+            for (int i = 0; i < games; i++) {
+                GameResult result = done.take().get();
+                stats.add(result);
+                double llr = stats.llr(elo0, elo1);
+                System.out.printf("%s | %s llr=%.2f%n", result, stats, llr);
+                if (llr <= lower || llr >= upper) {
+                    System.out.println("SPRT: " + (llr >= upper ? "H1" : "H0") + " accepted after "
+                            + stats.games() + " games");
+                    break;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.println("final " + stats);
+    }
+
+    static List<String> readOpenings(String file) throws IOException {
+        List<String> openings = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) openings.add(line);
+            }
+        }
+        if (openings.isEmpty()) {
+            throw new IOException("No openings in " + file);
+        }
+        return openings;
+    }
+
+    /**
+     * Plays one game to the end. Safe to call from several threads at once.
+     * @param game         Game number, used for the seed and the report.
+     * @param fen          Starting position.
+     * @param firstIsWhite True if the first engine plays white.
+     * @return The result.
+     */
+    GameResult playGame(int game, String fen, boolean firstIsWhite) {
+        Random rnd = new Random(seed + game);
+        GameResult result = new GameResult();
+        result.game = game;
+        result.firstIsWhite = firstIsWhite;
+        Game board = new Game();
+        board.loadFen(fen);
+        Engine firstEngine = engine(first), secondEngine = engine(second);
+        while (true) {
+            if (result.plies == maxPlies) {
+                result.termination = Termination.MOVE_LIMIT;
+                result.score = 0.5;
+                return result;
+            }
+            boolean whiteMoved = board.isWhiteToMove();
+            short[] legal = board.legalMoveList();
+            if (legal.length == 0) {
+                if (board.isInCheck()) {
+                    // Only reached from an opening that is already mate.
+                    result.termination = Termination.CHECKMATE;
+                    result.score = whiteMoved == firstIsWhite ? 0 : 1;
+                } else {
+                    result.termination = Termination.STALEMATE;
+                    result.score = 0.5;
+                }
+                return result;
+            }
+            Engine engine = whiteMoved == firstIsWhite ? firstEngine : secondEngine;
+            ReturnPlay res = board.play(engine.chooseMove(board, legal, rnd));
+            result.plies++;
+            if (res.message == ReturnPlay.Message.ILLEGAL_MOVE) {
+                // The engine that moved forfeits.
+                result.termination = Termination.ILLEGAL_MOVE;
+                result.score = whiteMoved == firstIsWhite ? 0 : 1;
+                return result;
+            }
+            if (res.message == ReturnPlay.Message.CHECKMATE_WHITE_WINS
+                    || res.message == ReturnPlay.Message.CHECKMATE_BLACK_WINS) {
+                result.termination = Termination.CHECKMATE;
+                result.score = whiteMoved == firstIsWhite ? 1 : 0;
+                return result;
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * UCI front end for the rules engine, as an alternative to the PlayChess console loop.
+ * Supports uci, isready, ucinewgame, position (startpos or fen, with moves), go, stop and quit.
+ * Output is buffered and flushed once per response; go runs on a worker thread so the
+ * reader stays responsive to stop, and "go infinite" answers only once stop arrives.
+ */
+public class UciChess {
+
+    private final BufferedReader in;
+    private final PrintWriter out;
+    private final Game game = new Game();
+    private Thread searchThread;
+    private volatile boolean stopRequested;
+
+    UciChess(BufferedReader in, PrintWriter out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        new UciChess(in, out).run();
+    }
+
+    void run() throws IOException {
+        game.start();
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            String[] tokens = line.split("\\s+");
+            switch (tokens[0]) {
+                case "uci":
+                    send("id name softmethChess\nid author softmethChess\nuciok");
+                    break;
+                case "isready":
+                    send("readyok");
+                    break;
+                case "ucinewgame":
+                    stopSearch();
+                    game.start();
+                    break;
+                case "position":
+                    stopSearch();
+                    setPosition(tokens);
+                    break;
+                case "go":
+                    stopSearch();
+                    startSearch(tokens);
+                    break;
+                case "stop":
+                    stopSearch();
+                    break;
+                case "quit":
+                    stopSearch();
+                    out.flush();
+                    return;
+                default:
+                    // Unknown commands are ignored, as the protocol requires.
+                    break;
+            }
+        }
+        stopSearch();
+    }
+
+    private synchronized void send(String text) {
+        out.println(text);
+        out.flush();
+    }
+
+    /**
+     * Handles "position startpos [moves m1 m2 ...]" and "position fen &lt;fen&gt; [moves ...]".
+     * Moves are in UCI long algebraic form (e2e4, e7e8q) and are replayed through
+     * Game.play. A FEN that Game.loadFen rejects leaves the start position.
+     */
+    private void setPosition(String[] tokens) {
+        if (tokens.length < 2) {
+            return;
+        }
+        int i;
+        if (tokens[1].equals("startpos")) {
+            game.start();
+            i = 2;
+        } else if (tokens[1].equals("fen")) {
+            // Up to six FEN fields, ending at "moves".
+            StringBuilder fen = new StringBuilder();
+            for (i = 2; i < tokens.length && i < 8 && !tokens[i].equals("moves"); i++) {
+                fen.append(tokens[i]).append(' ');
+            }
+            try {
+                game.loadFen(fen.toString());
+            } catch (IllegalArgumentException e) {
+                game.start();
+                return;
+            }
+        } else {
+            return;
+        }
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i = i + 1; i < tokens.length; i++) {
+                ReturnPlay res = game.play(fromUci(tokens[i]));
+                if (res.message == ReturnPlay.Message.ILLEGAL_MOVE) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles "go". Of the search limits only movetime is used, since the scan is
+     * instant; values that are not numbers are ignored. Under "infinite" (and "ponder")
+     * bestmove is held back until stop, as the protocol requires.
+     */
+    private void startSearch(String[] tokens) {
+        long moveTime = -1;
+        boolean waitForStop = false;
+        for (int i = 1; i < tokens.length; i++) {
+            switch (tokens[i]) {
+                case "movetime":
+                    if (i + 1 < tokens.length) moveTime = parseCount(tokens[++i]);
+                    break;
+                case "infinite":
+                case "ponder":
+                    waitForStop = true;
+                    break;
+                default:
+                    // wtime, btime, depth, nodes and the rest do not apply to a one-ply scan.
+                    break;
+            }
+        }
+        long deadline = moveTime > 0 ? System.nanoTime() + moveTime * 1_000_000L : Long.MAX_VALUE;
+        boolean holdResult = waitForStop;
+        stopRequested = false;
+        searchThread = new Thread(() -> {
+            String best = search(deadline);
+            while (holdResult && !stopRequested) {
+                LockSupport.park(this);
+            }
+            send("bestmove " + best);
+        }, "uci-search");
+        searchThread.setDaemon(true);
+        searchThread.start();
+    }
+
+    /**
+     * Parses a non-negative count from a go option.
+     * @return The value, or -1 if the token is not a number.
+     */
+    private static long parseCount(String token) {
+        try {
+            return Math.max(-1, Long.parseLong(token));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void stopSearch() {
+        if (searchThread == null) return;
+        stopRequested = true;
+        LockSupport.unpark(searchThread);
+        try {
+            searchThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        searchThread = null;
+    }
+
+    /**
+     * The engine has no tree search; this scans the legal moves once and prefers the
+     * most valuable capture and promotion, checking the stop flag between moves.
+     * @param deadline System.nanoTime() value at which to stop.
+     * @return The chosen move in UCI form, or "0000" if there are no legal moves.
+     */
+    private String search(long deadline) {
+        short best = Move.NONE;
+        int bestScore = Integer.MIN_VALUE;
+        for (short move : game.legalMoveList()) {
+            if (best != Move.NONE && (stopRequested || System.nanoTime() > deadline)) {
+                break;
+            }
+            int score = scoreMove(game, move);
+            if (score > bestScore) {
+                bestScore = score;
+                best = move;
+            }
+        }
+        return best == Move.NONE ? "0000" : Move.toUci(best);
+    }
+
+    // Extra value of promoting to a knight, bishop, rook or queen, indexed by piece type.
+    private static final int[] PROMOTION_GAIN = {0, 220, 230, 400, 800};
+
+    /**
+     * Scores a move of a game's current position by the material it captures or promotes to.
+     * @param game The game.
+     * @param move The packed move, as listed by Game.legalMoveList.
+     * @return The score in centipawns; 0 for a quiet move.
+     */
+    static int scoreMove(Game game, short move) {
+        int score = 0;
+        if (Move.flags(move) == Move.EN_PASSANT) {
+            score += GameAnalyzer.PIECE_VALUES[Piece.PAWN];
+        } else if (Move.isCapture(move)) {
+            Piece captured = game.pieceAt(Move.to(move) / 8, Move.to(move) % 8);
+            score += GameAnalyzer.PIECE_VALUES[captured.getCode() % 6];
+        }
+        if (Move.isPromotion(move)) {
+            score += PROMOTION_GAIN[Move.promotionType(move)];
+        }
+        return score;
+    }
+
+    /**
+     * Converts a UCI move (e2e4, e7e8q) to Chess.play notation (e2 e4, e7 e8 q).
+     * @param uci The UCI move.
+     * @return The move in play notation.
+     */
+    static String fromUci(String uci) {
+        if (uci.length() < 4) return uci;
+        String move = uci.substring(0, 2) + " " + uci.substring(2, 4);
+        return uci.length() > 4 ? move + " " + uci.charAt(4) : move;
+    }
+}
@@ -0,0 +1,100 @@
+package chess;
+
+class Zobrist {
+    // Piece indices: 0-5 white P, N, B, R, Q, K; 6-11 black P, N, B, R, Q, K.
+    static final long[][] PIECE_SQUARE = new long[12][64];
+    static final long[] EN_PASSANT_FILE = new long[8];
+    static final long[] CASTLING = new long[16];
+    static final long BLACK_TO_MOVE;
+
+    static {
+        // Fixed seed so keys (and anything stored under them) are stable across runs.
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int p = 0; p < 12; p++) {
+            for (int sq = 0; sq < 64; sq++) {
+                seed = nextSeed(seed);
+                PIECE_SQUARE[p][sq] = mix(seed);
+            }
+        }
+        for (int f = 0; f < 8; f++) {
+            seed = nextSeed(seed);
+            EN_PASSANT_FILE[f] = mix(seed);
+        }
+        seed = nextSeed(seed);
+        BLACK_TO_MOVE = mix(seed);
+        // CASTLING[0] stays 0 so a position without rights hashes like one never given any.
+        for (int i = 1; i < 16; i++) {
+            seed = nextSeed(seed);
+            CASTLING[i] = mix(seed);
+        }
+    }
+
+    /**
+     * Maps a piece to its index in the key tables.
+     * @param p A non-null piece.
+     * @return Index 0-11.
+     */
+    static int pieceIndex(Piece p) {
+        return p.getCode();
+    }
+
+    /**
+     * Returns the key contribution of a piece standing on a square.
+     * @param p   The piece, or null for an empty square.
+     * @param row Row index (0-7).
+     * @param col Column index (0-7).
+     * @return The key, or 0 for an empty square.
+     */
+    static long pieceKey(Piece p, int row, int col) {
+        return p == null ? 0L : PIECE_SQUARE[pieceIndex(p)][row * 8 + col];
+    }
+
+    /**
+     * Computes the full position key from scratch.
+     * @param board          The board.
+     * @param whiteToMove    True if white is to move.
+     * @param enPassantSquare The en passant target square as {row, col}, or null.
+     * @param castlingRights  The castling rights bits (see Chess).
+     * @return The position key.
+     */
+    static long computeKey(Piece[][] board, boolean whiteToMove, int[] enPassantSquare, int castlingRights) {
+        long key = 0L;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                key ^= pieceKey(board[r][c], r, c);
+            }
+        }
+        if (!whiteToMove) key ^= BLACK_TO_MOVE;
+        if (enPassantSquare != null) key ^= EN_PASSANT_FILE[enPassantSquare[1]];
+        key ^= CASTLING[castlingRights];
+        return key;
+    }
+
+    /**
+     * Computes the pawn-structure key from scratch. Only pawns contribute.
+     * @param board The board.
+     * @return The pawn key.
+     */
+    static long computePawnKey(Piece[][] board) {
+        long key = 0L;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                if (board[r][c] instanceof Pawn) {
+                    key ^= pieceKey(board[r][c], r, c);
+                }
+            }
+        }
+        return key;
+    }
+
+    private static long nextSeed(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    // SplitMix64 finalizer.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}